@@ -0,0 +1,270 @@
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A service that sorts many small, independent arrays.  Handing each
+ * small sort to a thread of its own can cost more than the sort, so tiny
+ * arrays go on a shared queue.  A few workers take batches of them from
+ * the queue and sort them one after another.  Larger arrays are each
+ * sorted as a separate task.  Results come back as CompletableFutures.
+ *
+ * The service runs its work on an Executor.  By default it creates a
+ * fixed pool with one thread per processor.  On a JDK with virtual
+ * threads, pass Executors.newVirtualThreadPerTaskExecutor() instead.
+ */
+public class BatchSortService
+  implements AutoCloseable
+{
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default size at or below which an array is batched.
+   */
+  public static final int DEFAULT_TINY_SIZE = 1024;
+
+  /**
+   * The default number of elements a worker sorts before handing the
+   * rest of the queue to a new task.
+   */
+  public static final int DEFAULT_BATCH_ELEMENTS = 64 * 1024;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where the sorts run.
+   */
+  Executor executor;
+
+  /**
+   * The executor to shut down when we're closed, or null if the
+   * executor belongs to someone else.
+   */
+  ExecutorService owned;
+
+  /**
+   * Arrays of at most this size are batched.
+   */
+  int tinySize;
+
+  /**
+   * The number of elements in a batch.
+   */
+  int batchElements;
+
+  /**
+   * The most workers that may drain the queue at once.
+   */
+  int maxWorkers;
+
+  /**
+   * The sorts waiting for a worker.
+   */
+  ConcurrentLinkedQueue<Request<?>> pending;
+
+  /**
+   * The number of workers currently draining the queue.
+   */
+  AtomicInteger workers;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a service with its own pool of one thread per processor.
+   */
+  public BatchSortService()
+  {
+    this(Executors.newFixedThreadPool(Runtime.getRuntime()
+                                             .availableProcessors()),
+         DEFAULT_TINY_SIZE, DEFAULT_BATCH_ELEMENTS,
+         Runtime.getRuntime().availableProcessors());
+    this.owned = (ExecutorService) this.executor;
+  } // BatchSortService()
+
+  /**
+   * Create a service that runs on executor.  Arrays of at most tinySize
+   * elements are batched, at most maxWorkers tasks drain the batch
+   * queue at once, and each of those tasks sorts about batchElements
+   * elements before it yields.
+   */
+  public BatchSortService(Executor executor, int tinySize,
+                          int batchElements, int maxWorkers)
+  {
+    if (maxWorkers < 1)
+      throw new IllegalArgumentException("need at least one worker");
+    this.executor = executor;
+    this.owned = null;
+    this.tinySize = tinySize;
+    this.batchElements = batchElements;
+    this.maxWorkers = maxWorkers;
+    this.pending = new ConcurrentLinkedQueue<Request<?>>();
+    this.workers = new AtomicInteger(0);
+  } // BatchSortService(Executor, int, int, int)
+
+  // +---------+---------------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sort values in place using order.  The result completes with
+   * values once it is sorted, or exceptionally if order throws or the
+   * executor rejects the sort.
+   *
+   * @pre
+   *   values is not changed until the result completes.
+   */
+  public <T> CompletableFuture<T[]> sort(T[] values, Comparator<T> order)
+  {
+    final Request<T> request = new Request<T>(values, order);
+    if (values.length > this.tinySize)
+      {
+        try
+          {
+            this.executor.execute(new Runnable()
+              {
+                public void run()
+                {
+                  request.run();
+                } // run()
+              }); // new Runnable
+          } // try
+        catch (RejectedExecutionException e)
+          {
+            request.result.completeExceptionally(e);
+          } // catch (RejectedExecutionException)
+      } // if the array is too big to batch
+    else
+      {
+        this.pending.add(request);
+        startWorker();
+      } // if the array is tiny
+    return request.result;
+  } // sort(T[], Comparator<T>)
+
+  /**
+   * Shut down the executor, if we created it.  Sorts that have already
+   * been submitted still finish.
+   */
+  public void close()
+  {
+    if (this.owned != null)
+      this.owned.shutdown();
+  } // close()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Start another worker on the queue, unless there are already
+   * maxWorkers of them.  If the executor rejects the worker and no
+   * other worker is left to drain the queue, fail everything on it.
+   */
+  void startWorker()
+  {
+    int current;
+    do
+      {
+        current = this.workers.get();
+        if (current >= this.maxWorkers)
+          return;
+      } // do
+    while (!this.workers.compareAndSet(current, current + 1));
+    try
+      {
+        this.executor.execute(new Runnable()
+          {
+            public void run()
+            {
+              drain();
+            } // run()
+          }); // new Runnable
+      } // try
+    catch (RejectedExecutionException e)
+      {
+        // A worker that is still running will see anything we queued
+        // when it finishes, so only the last one out fails the queue.
+        if (this.workers.decrementAndGet() == 0)
+          failPending(e);
+      } // catch (RejectedExecutionException)
+  } // startWorker()
+
+  /**
+   * Sort one batch of queued requests.  If more requests remain, hand
+   * them to a new task so that other work gets a turn.
+   */
+  void drain()
+  {
+    int elements = 0;
+    Request<?> request;
+    while ((elements < this.batchElements)
+           && ((request = this.pending.poll()) != null))
+      {
+        request.run();
+        elements += request.values.length;
+      } // while
+    this.workers.decrementAndGet();
+    // Something may have been queued after we stopped looking.
+    if (!this.pending.isEmpty())
+      startWorker();
+  } // drain()
+
+  /**
+   * Complete every queued request exceptionally with cause.
+   */
+  void failPending(Throwable cause)
+  {
+    Request<?> request;
+    while ((request = this.pending.poll()) != null)
+      request.result.completeExceptionally(cause);
+  } // failPending(Throwable)
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A request to sort one array.
+   */
+  static class Request<T>
+    implements Runnable
+  {
+    T[] values;
+    Comparator<T> order;
+    CompletableFuture<T[]> result;
+
+    public Request(T[] values, Comparator<T> order)
+    {
+      this.values = values;
+      this.order = order;
+      this.result = new CompletableFuture<T[]>();
+    } // Request(T[], Comparator<T>)
+
+    /**
+     * Do the sort and complete the result.
+     */
+    public void run()
+    {
+      try
+        {
+          Quicksorter.qsort(this.values, this.order);
+          this.result.complete(this.values);
+        } // try
+      catch (Throwable e)
+        {
+          this.result.completeExceptionally(e);
+        } // catch (Throwable)
+    } // run()
+  } // class Request<T>
+} // class BatchSortService
@@ -0,0 +1,136 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Test;
+
+/**
+ * Tests of the batch sort service.
+ */
+public class BatchSortServiceTests
+{
+  /**
+   * Submit lots of arrays, small and large, and make sure that they all
+   * come back sorted.
+   */
+  @Test
+  public void testMany()
+    throws InterruptedException, ExecutionException
+  {
+    BatchSortService service = new BatchSortService();
+    try
+      {
+        ArrayList<Integer[]> expected = new ArrayList<Integer[]>();
+        ArrayList<CompletableFuture<Integer[]>> results =
+            new ArrayList<CompletableFuture<Integer[]>>();
+        for (int i = 0; i < 1000; i++)
+          {
+            int n = (i % 100 == 0)
+                    ? 10 * BatchSortService.DEFAULT_TINY_SIZE
+                    : SamTest.generator.nextInt(SamTest.MAX_RANDOM_ARRAY_SIZE);
+            Integer[] sorted = SamTest.randomSortedInts(n);
+            expected.add(sorted);
+            results.add(service.sort(SamTest.permute(sorted.clone()),
+                                     SamTest.increasing));
+          } // for
+        for (int i = 0; i < results.size(); i++)
+          assertArrayEquals(expected.get(i), results.get(i).get());
+      } // try
+    finally
+      {
+        service.close();
+      } // finally
+  } // testMany()
+
+  /**
+   * Make sure that small batches and a single worker still get
+   * everything done, and that failures are reported.
+   */
+  @Test
+  public void testSmallBatches()
+    throws InterruptedException
+  {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try
+      {
+        BatchSortService service = new BatchSortService(pool, 16, 20, 1);
+        ArrayList<CompletableFuture<Integer[]>> results =
+            new ArrayList<CompletableFuture<Integer[]>>();
+        for (int i = 0; i < 200; i++)
+          results.add(service.sort(SamTest.permute(SamTest.randomSortedInts(10)),
+                                   SamTest.increasing));
+        Comparator<Integer> broken = new Comparator<Integer>()
+          {
+            public int compare(Integer left, Integer right)
+            {
+              throw new IllegalStateException();
+            } // compare(Integer, Integer)
+          }; // new Comparator<Integer>
+        CompletableFuture<Integer[]> failure =
+            service.sort(new Integer[] { 2, 1 }, broken);
+        for (CompletableFuture<Integer[]> result : results)
+          SamTest.checkSort(result.join(), SamTest.increasing);
+        try
+          {
+            failure.get();
+            fail("Expected the sort to fail");
+          } // try
+        catch (ExecutionException e)
+          {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+          } // catch (ExecutionException)
+      } // try
+    finally
+      {
+        pool.shutdown();
+      } // finally
+  } // testSmallBatches()
+
+  /**
+   * Make sure that a sort the executor rejects fails rather than
+   * hanging, and that the service keeps working afterwards.
+   */
+  @Test
+  public void testRejected()
+    throws InterruptedException
+  {
+    // Rejects every other task and runs the rest on the calling thread.
+    Executor flaky = new Executor()
+      {
+        int calls = 0;
+
+        public void execute(Runnable task)
+        {
+          if (calls++ % 2 == 0)
+            throw new RejectedExecutionException();
+          task.run();
+        } // execute(Runnable)
+      }; // new Executor
+    BatchSortService service = new BatchSortService(flaky, 16, 20, 1);
+    for (int n : new int[] { 10, 10, 100, 100 })
+      {
+        Integer[] expected = SamTest.randomSortedInts(n);
+        CompletableFuture<Integer[]> rejected =
+            service.sort(SamTest.permute(expected.clone()), SamTest.increasing);
+        try
+          {
+            rejected.get();
+            fail("Expected the sort to be rejected");
+          } // try
+        catch (ExecutionException e)
+          {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+          } // catch (ExecutionException)
+        CompletableFuture<Integer[]> accepted =
+            service.sort(SamTest.permute(expected.clone()), SamTest.increasing);
+        assertTrue(accepted.isDone());
+        assertArrayEquals(expected, accepted.join());
+      } // for
+  } // testRejected()
+} // class BatchSortServiceTests
@@ -0,0 +1,371 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Sort streams of records that are too large to fit in memory.  We read
+ * the input in runs of at most runSize records, sort each run with
+ * Quicksorter, and spill it to a temporary file.  We then merge the runs,
+ * at most fanIn at a time, until a single sorted stream remains.
+ * Input that ends partway through a record is reported as an error
+ * rather than sorted without that record.
+ */
+public class ExternalSorter<T>
+{
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default number of records in each run.
+   */
+  public static final int DEFAULT_RUN_SIZE = 1 << 20;
+
+  /**
+   * The default number of runs we merge at once.
+   */
+  public static final int DEFAULT_FAN_IN = 64;
+
+  /**
+   * The size of the buffer used for each input or output stream.
+   */
+  static final int BUFFER_SIZE = 1 << 16;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The order in which records should appear.
+   */
+  Comparator<T> order;
+
+  /**
+   * How we read and write records.
+   */
+  RecordCodec<T> codec;
+
+  /**
+   * The maximum number of records we sort in memory at once.
+   */
+  int runSize;
+
+  /**
+   * The maximum number of runs we merge at once.
+   */
+  int fanIn;
+
+  /**
+   * The directory in which we store runs.  If null, we use the
+   * system's default temporary directory.
+   */
+  File tempDir;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a sorter with the default run size and fan-in that stores
+   * its runs in the default temporary directory.
+   */
+  public ExternalSorter(Comparator<T> order, RecordCodec<T> codec)
+  {
+    this(order, codec, DEFAULT_RUN_SIZE, DEFAULT_FAN_IN, null);
+  } // ExternalSorter(Comparator<T>, RecordCodec<T>)
+
+  /**
+   * Create a sorter that sorts runSize records at a time in memory,
+   * merges at most fanIn runs at a time, and stores its runs in
+   * tempDir.
+   *
+   * @pre
+   *   runSize > 0
+   * @pre
+   *   fanIn > 1
+   */
+  public ExternalSorter(Comparator<T> order, RecordCodec<T> codec,
+                        int runSize, int fanIn, File tempDir)
+  {
+    if (runSize <= 0)
+      throw new IllegalArgumentException("runSize must be positive");
+    if (fanIn <= 1)
+      throw new IllegalArgumentException("fanIn must be at least 2");
+    this.order = order;
+    this.codec = codec;
+    this.runSize = runSize;
+    this.fanIn = fanIn;
+    this.tempDir = tempDir;
+  } // ExternalSorter(Comparator<T>, RecordCodec<T>, int, int, File)
+
+  // +---------+---------------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Read all of the records in source and write them, sorted, to
+   * target.
+   */
+  public void sort(File source, File target)
+    throws IOException
+  {
+    InputStream in = new FileInputStream(source);
+    try
+      {
+        OutputStream out = new FileOutputStream(target);
+        try
+          {
+            sort(in, out);
+          } // try
+        finally
+          {
+            out.close();
+          } // finally
+      } // try
+    finally
+      {
+        in.close();
+      } // finally
+  } // sort(File, File)
+
+  /**
+   * Read all of the records in source and write them, sorted, to
+   * target.  Neither stream is closed.
+   */
+  public void sort(InputStream source, OutputStream target)
+    throws IOException
+  {
+    ArrayList<File> runs = new ArrayList<File>();
+    // The runs made by the current pass, so they're deleted if it fails.
+    ArrayList<File> merged = new ArrayList<File>();
+    try
+      {
+        makeRuns(source, runs);
+        // Merge groups of runs until we can do the rest in one pass.
+        while (runs.size() > fanIn)
+          {
+            for (int i = 0; i < runs.size(); i += fanIn)
+              {
+                File run = newRun();
+                merged.add(run);
+                OutputStream out = new FileOutputStream(run);
+                try
+                  {
+                    merge(runs.subList(i, Math.min(i + fanIn, runs.size())),
+                          out);
+                  } // try
+                finally
+                  {
+                    out.close();
+                  } // finally
+              } // for
+            deleteAll(runs);
+            runs = merged;
+            merged = new ArrayList<File>();
+          } // while
+        merge(runs, target);
+      } // try
+    finally
+      {
+        deleteAll(runs);
+        deleteAll(merged);
+      } // finally
+  } // sort(InputStream, OutputStream)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Split source into sorted runs, adding the files for those runs
+   * to runs.
+   */
+  void makeRuns(InputStream source, ArrayList<File> runs)
+    throws IOException
+  {
+    DataInputStream in =
+        new DataInputStream(new BufferedInputStream(source, BUFFER_SIZE));
+    @SuppressWarnings("unchecked")
+    T[] chunk = (T[]) new Object[runSize];
+    while (!atEnd(in))
+      {
+        int size = 0;
+        while ((size < runSize) && !atEnd(in))
+          {
+            T val = readRecord(in);
+            chunk[size++] = val;
+          } // while
+        Quicksorter.qsort(chunk, order, 0, size);
+        File run = newRun();
+        runs.add(run);
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run),
+                                                          BUFFER_SIZE));
+        try
+          {
+            for (int i = 0; i < size; i++)
+              codec.write(out, chunk[i]);
+          } // try
+        finally
+          {
+            out.close();
+          } // finally
+      } // while
+  } // makeRuns(InputStream, ArrayList<File>)
+
+  /**
+   * Merge the sorted runs, writing the result to target.
+   */
+  void merge(Iterable<File> runs, OutputStream target)
+    throws IOException
+  {
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(target, BUFFER_SIZE));
+    PriorityQueue<RunReader> heap =
+        new PriorityQueue<RunReader>(fanIn, new Comparator<RunReader>()
+          {
+            public int compare(RunReader left, RunReader right)
+            {
+              return order.compare(left.head, right.head);
+            } // compare(RunReader, RunReader)
+          }); // new Comparator<RunReader>
+    ArrayList<RunReader> readers = new ArrayList<RunReader>();
+    try
+      {
+        for (File run : runs)
+          {
+            RunReader reader = new RunReader(run);
+            readers.add(reader);
+            if (reader.advance())
+              heap.add(reader);
+          } // for
+        while (!heap.isEmpty())
+          {
+            RunReader reader = heap.poll();
+            codec.write(out, reader.head);
+            if (reader.advance())
+              heap.add(reader);
+          } // while
+        out.flush();
+      } // try
+    finally
+      {
+        for (RunReader reader : readers)
+          reader.in.close();
+      } // finally
+  } // merge(Iterable<File>, OutputStream)
+
+  /**
+   * Read one record from in, which is not at its end.
+   *
+   * @throws IOException
+   *   If in ends partway through the record.
+   */
+  T readRecord(DataInputStream in)
+    throws IOException
+  {
+    try
+      {
+        return codec.read(in);
+      } // try
+    catch (EOFException e)
+      {
+        IOException truncated =
+            new IOException("Input ends partway through a record");
+        truncated.initCause(e);
+        throw truncated;
+      } // catch (EOFException)
+  } // readRecord(DataInputStream)
+
+  /**
+   * Determine whether in has no more bytes, without consuming any.
+   * in must support mark, as our buffered streams do.
+   */
+  static boolean atEnd(InputStream in)
+    throws IOException
+  {
+    in.mark(1);
+    boolean end = (in.read() < 0);
+    in.reset();
+    return end;
+  } // atEnd(InputStream)
+
+  /**
+   * Create a new file for a run.  Runs are deleted explicitly, even
+   * when a sort fails, rather than with deleteOnExit, whose list of
+   * files only grows.
+   */
+  File newRun()
+    throws IOException
+  {
+    return File.createTempFile("run", ".tmp", tempDir);
+  } // newRun()
+
+  /**
+   * Delete all of the given files.
+   */
+  static void deleteAll(Iterable<File> files)
+  {
+    for (File file : files)
+      file.delete();
+  } // deleteAll(Iterable<File>)
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A reader for one run, which keeps track of the smallest record
+   * that has not yet been merged.
+   */
+  class RunReader
+  {
+    /**
+     * The stream we're reading from.
+     */
+    DataInputStream in;
+
+    /**
+     * The next record in the run.
+     */
+    T head;
+
+    /**
+     * Open run for reading.
+     */
+    public RunReader(File run)
+      throws IOException
+    {
+      this.in =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(run),
+                                                      BUFFER_SIZE));
+    } // RunReader(File)
+
+    /**
+     * Read the next record into head.  Returns false if there are no
+     * more records.
+     */
+    public boolean advance()
+      throws IOException
+    {
+      if (atEnd(this.in))
+        {
+          this.head = null;
+          return false;
+        } // if
+      this.head = readRecord(this.in);
+      return true;
+    } // advance()
+  } // class RunReader
+} // class ExternalSorter<T>
@@ -0,0 +1,183 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+/**
+ * Tests of the external sorter.
+ */
+public class ExternalSorterTests
+{
+  // +---------------+---------------------------------------------------
+  // | Static Fields |
+  // +---------------+
+
+  /**
+   * A codec for integers, stored as four bytes each.
+   */
+  static RecordCodec<Integer> ints = new RecordCodec<Integer>()
+    {
+      public Integer read(DataInput in)
+        throws IOException
+      {
+        return in.readInt();
+      } // read(DataInput)
+
+      public void write(DataOutput out, Integer val)
+        throws IOException
+      {
+        out.writeInt(val);
+      } // write(DataOutput, Integer)
+    }; // new RecordCodec<Integer>
+
+  // +-----------+-------------------------------------------------------
+  // | Utilities |
+  // +-----------+
+
+  /**
+   * Sort values using an external sorter with the given run size and
+   * fan in, and make sure that we get the same result as
+   * Arrays.sort.
+   */
+  public static void checkSort(Integer[] values, int runSize, int fanIn)
+    throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    for (Integer val : values)
+      out.writeInt(val);
+    out.close();
+
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    new ExternalSorter<Integer>(SamTest.increasing, ints, runSize, fanIn,
+                                null).sort(new ByteArrayInputStream(bytes.toByteArray()),
+                                           result);
+
+    DataInputStream in =
+        new DataInputStream(new ByteArrayInputStream(result.toByteArray()));
+    Integer[] sorted = new Integer[result.size() / 4];
+    for (int i = 0; i < sorted.length; i++)
+      sorted[i] = in.readInt();
+
+    Integer[] expected = values.clone();
+    Arrays.sort(expected);
+    assertArrayEquals(expected, sorted);
+  } // checkSort(Integer[], int, int)
+
+  // +-------+-----------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Empty input and input that fits in one run.
+   */
+  @Test
+  public void testSmall()
+    throws IOException
+  {
+    checkSort(new Integer[] { }, 4, 2);
+    checkSort(new Integer[] { 1 }, 4, 2);
+    checkSort(new Integer[] { 3, 1, 2 }, 4, 2);
+    checkSort(new Integer[] { 3, 1, 2, 0 }, 4, 2);
+  } // testSmall()
+
+  /**
+   * Inputs with more runs than we can merge at once.
+   */
+  @Test
+  public void testMultiPass()
+    throws IOException
+  {
+    for (int i = 0; i < SamTest.NUM_RANDOM_ARRAYS; i++)
+      {
+        Integer[] values =
+            SamTest.permute(SamTest.randomSortedInts(SamTest.generator.nextInt(1000)));
+        checkSort(values, 1 + SamTest.generator.nextInt(20),
+                  2 + SamTest.generator.nextInt(5));
+      } // for
+  } // testMultiPass()
+
+  /**
+   * Input that ends partway through a record is an error.
+   */
+  @Test
+  public void testTruncated()
+  {
+    byte[] bytes = new byte[] { 0, 0, 0, 2, 0, 0, 0, 1, 0, 0 };
+    try
+      {
+        new ExternalSorter<Integer>(SamTest.increasing, ints)
+            .sort(new ByteArrayInputStream(bytes), new ByteArrayOutputStream());
+        fail("Expected a truncated record to be reported");
+      } // try
+    catch (IOException e)
+      {
+      } // catch (IOException)
+  } // testTruncated()
+
+  /**
+   * If a merge fails, every run, including those written by the
+   * failed pass, is deleted.
+   */
+  @Test
+  public void testCleanupOnFailure()
+    throws IOException
+  {
+    File dir = File.createTempFile("runs", "");
+    dir.delete();
+    dir.mkdir();
+    try
+      {
+        // Fails partway through the first merge pass.
+        RecordCodec<Integer> failing = new RecordCodec<Integer>()
+          {
+            int writes = 0;
+
+            public Integer read(DataInput in)
+              throws IOException
+            {
+              return ints.read(in);
+            } // read(DataInput)
+
+            public void write(DataOutput out, Integer val)
+              throws IOException
+            {
+              if (++writes > 30)
+                throw new IOException("disk full");
+              ints.write(out, val);
+            } // write(DataOutput, Integer)
+          }; // new RecordCodec<Integer>
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < 20; i++)
+          out.writeInt(20 - i);
+        out.close();
+        try
+          {
+            new ExternalSorter<Integer>(SamTest.increasing, failing, 2, 2, dir)
+                .sort(new ByteArrayInputStream(bytes.toByteArray()),
+                      new ByteArrayOutputStream());
+            fail("Expected the merge to fail");
+          } // try
+        catch (IOException e)
+          {
+            assertEquals("disk full", e.getMessage());
+          } // catch (IOException)
+        assertEquals(0, dir.listFiles().length);
+      } // try
+    finally
+      {
+        for (File file : dir.listFiles())
+          file.delete();
+        dir.delete();
+      } // finally
+  } // testCleanupOnFailure()
+} // class ExternalSorterTests
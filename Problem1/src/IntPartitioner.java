@@ -0,0 +1,24 @@
+/**
+ * Something that can partition part of an array of ints around a pivot.
+ * Lets Quicksorter use partition kernels, such as the vectorized one in
+ * IntVectorPartitioner, that need modules we can't count on having.
+ */
+public interface IntPartitioner
+{
+  /**
+   * The number of extra elements that scratch must have beyond the
+   * size of the subarray being partitioned.
+   */
+  public static final int SCRATCH_PADDING = 64;
+
+  /**
+   * Rearrange the subarray of values from lb (inclusive) to ub
+   * (exclusive) so that the values smaller than pivot come first.
+   * Returns the index of the first value that is not smaller than
+   * pivot.
+   *
+   * @pre
+   *   scratch.length >= ub - lb + SCRATCH_PADDING
+   */
+  public int partition(int[] values, int lb, int ub, int pivot, int[] scratch);
+} // interface IntPartitioner
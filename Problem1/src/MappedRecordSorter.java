@@ -0,0 +1,389 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sort files of fixed-width binary records without creating an object
+ * for each record.  The file is mapped into memory and the records are
+ * rearranged in place (or an index of them is sorted) with the same DNF
+ * quicksort that Quicksorter uses.  Records are ordered by a slice of
+ * each record, the key, compared as unsigned bytes from first to last.
+ *
+ * A single mapping is limited to 2GB, so larger files are mapped as
+ * several segments, each holding a whole number of records.  Records
+ * are numbered with ints, so a file may hold up to Integer.MAX_VALUE
+ * of them.
+ */
+public class MappedRecordSorter
+{
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The most bytes we map at once.
+   */
+  public static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of bytes in each record.
+   */
+  int recordSize;
+
+  /**
+   * The offset of the key within each record.
+   */
+  int keyOffset;
+
+  /**
+   * The number of bytes in the key.
+   */
+  int keyLength;
+
+  /**
+   * The number of records in each mapped segment of a file.
+   */
+  int recordsPerSegment;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a sorter for records of recordSize bytes, ordered by the
+   * keyLength bytes starting at keyOffset.
+   */
+  public MappedRecordSorter(int recordSize, int keyOffset, int keyLength)
+  {
+    this(recordSize, keyOffset, keyLength, MAX_SEGMENT_SIZE);
+  } // MappedRecordSorter(int, int, int)
+
+  /**
+   * Create a sorter that maps files in segments of at most segmentSize
+   * bytes.  Only tests need segments smaller than MAX_SEGMENT_SIZE.
+   */
+  MappedRecordSorter(int recordSize, int keyOffset, int keyLength,
+                     int segmentSize)
+  {
+    if ((recordSize <= 0) || (keyOffset < 0) || (keyLength <= 0)
+        || (keyOffset + keyLength > recordSize))
+      throw new IllegalArgumentException("key must lie within the record");
+    if (segmentSize < recordSize)
+      throw new IllegalArgumentException("segment smaller than a record");
+    this.recordSize = recordSize;
+    this.keyOffset = keyOffset;
+    this.keyLength = keyLength;
+    this.recordsPerSegment = segmentSize / recordSize;
+  } // MappedRecordSorter(int, int, int, int)
+
+  // +---------+---------------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sort the records in file in place.
+   */
+  public void sort(File file)
+    throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try
+      {
+        Segments records = map(raf.getChannel(), FileChannel.MapMode.READ_WRITE);
+        sort(records, 0, records.count, ByteBuffer.allocate(this.keyLength));
+        for (ByteBuffer segment : records.buffers)
+          ((MappedByteBuffer) segment).force();
+      } // try
+    finally
+      {
+        raf.close();
+      } // finally
+  } // sort(File)
+
+  /**
+   * Compute the permutation that would sort the records in file,
+   * without changing the file.  That is, record result[0] comes first,
+   * then record result[1], and so on.
+   */
+  public int[] sortedIndex(File file)
+    throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try
+      {
+        return sortedIndex(map(raf.getChannel(),
+                               FileChannel.MapMode.READ_ONLY));
+      } // try
+    finally
+      {
+        raf.close();
+      } // finally
+  } // sortedIndex(File)
+
+  /**
+   * Sort the records in records, from index 0 up to the limit, in
+   * place.
+   *
+   * @pre
+   *   records.limit() is a multiple of recordSize
+   */
+  public void sort(ByteBuffer records)
+  {
+    Segments segments = new Segments(records, this.recordSize);
+    sort(segments, 0, segments.count, ByteBuffer.allocate(this.keyLength));
+  } // sort(ByteBuffer)
+
+  /**
+   * Compute the permutation that would sort the records in records,
+   * without changing records.
+   *
+   * @pre
+   *   records.limit() is a multiple of recordSize
+   */
+  public int[] sortedIndex(ByteBuffer records)
+  {
+    return sortedIndex(new Segments(records, this.recordSize));
+  } // sortedIndex(ByteBuffer)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Compute the permutation that would sort records.
+   */
+  int[] sortedIndex(Segments records)
+  {
+    int[] index = new int[records.count];
+    for (int i = 0; i < index.length; i++)
+      index[i] = i;
+    sort(records, index, 0, index.length, ByteBuffer.allocate(this.keyLength));
+    return index;
+  } // sortedIndex(Segments)
+
+  /**
+   * Sort records lb (inclusive) to ub (exclusive) in place, using pivot
+   * to hold a copy of each pivot's key.  Recurses on the smaller side
+   * of each partition and loops on the larger, so the stack stays
+   * shallow.
+   */
+  void sort(Segments records, int lb, int ub, ByteBuffer pivot)
+  {
+    while (ub - lb > 1)
+      {
+        copyKey(records, lb + (ub - lb) / 2, pivot);
+        // [lb, r) is small, [r, w) is equal, [w, b) is unprocessed,
+        // and [b, ub) is large.
+        int r = lb;
+        int w = lb;
+        int b = ub;
+        while (w < b)
+          {
+            int c = compareKey(records, w, pivot);
+            if (c < 0)
+              swapRecords(records, r++, w++);
+            else if (c == 0)
+              w++;
+            else
+              swapRecords(records, w, --b);
+          } // while
+        if (r - lb < ub - b)
+          {
+            sort(records, lb, r, pivot);
+            lb = b;
+          } // if the small side is smaller
+        else
+          {
+            sort(records, b, ub, pivot);
+            ub = r;
+          } // if the large side is smaller
+      } // while
+  } // sort(Segments, int, int, ByteBuffer)
+
+  /**
+   * Sort index[lb..ub) by the keys of the records they refer to.
+   */
+  void sort(Segments records, int[] index, int lb, int ub, ByteBuffer pivot)
+  {
+    while (ub - lb > 1)
+      {
+        copyKey(records, index[lb + (ub - lb) / 2], pivot);
+        int r = lb;
+        int w = lb;
+        int b = ub;
+        while (w < b)
+          {
+            int c = compareKey(records, index[w], pivot);
+            if (c < 0)
+              Quicksorter.swap(index, r++, w++);
+            else if (c == 0)
+              w++;
+            else
+              Quicksorter.swap(index, w, --b);
+          } // while
+        if (r - lb < ub - b)
+          {
+            sort(records, index, lb, r, pivot);
+            lb = b;
+          } // if the small side is smaller
+        else
+          {
+            sort(records, index, b, ub, pivot);
+            ub = r;
+          } // if the large side is smaller
+      } // while
+  } // sort(Segments, int[], int, int, ByteBuffer)
+
+  /**
+   * Copy the key of record i into key.
+   */
+  void copyKey(Segments records, int i, ByteBuffer key)
+  {
+    ByteBuffer segment = records.segment(i);
+    int base = records.offset(i) + this.keyOffset;
+    for (int k = 0; k < this.keyLength; k++)
+      key.put(k, segment.get(base + k));
+  } // copyKey(Segments, int, ByteBuffer)
+
+  /**
+   * Compare the key of record i with key.  Compares eight bytes at a
+   * time where it can; since all of the buffers we work with are
+   * big-endian, comparing the longs as unsigned values gives the same
+   * result as comparing their bytes one by one.
+   */
+  int compareKey(Segments records, int i, ByteBuffer key)
+  {
+    ByteBuffer segment = records.segment(i);
+    int base = records.offset(i) + this.keyOffset;
+    int k = 0;
+    for (; k + 8 <= this.keyLength; k += 8)
+      {
+        int c = Long.compareUnsigned(segment.getLong(base + k), key.getLong(k));
+        if (c != 0)
+          return c;
+      } // for each long
+    for (; k < this.keyLength; k++)
+      {
+        int c = (segment.get(base + k) & 0xFF) - (key.get(k) & 0xFF);
+        if (c != 0)
+          return c;
+      } // for each remaining byte
+    return 0;
+  } // compareKey(Segments, int, ByteBuffer)
+
+  /**
+   * Swap records i and j, which may be in different segments.
+   */
+  void swapRecords(Segments records, int i, int j)
+  {
+    if (i == j)
+      return;
+    ByteBuffer left = records.segment(i);
+    ByteBuffer right = records.segment(j);
+    int a = records.offset(i);
+    int b = records.offset(j);
+    int k = 0;
+    for (; k + 8 <= this.recordSize; k += 8)
+      {
+        long tmp = left.getLong(a + k);
+        left.putLong(a + k, right.getLong(b + k));
+        right.putLong(b + k, tmp);
+      } // for each long
+    for (; k < this.recordSize; k++)
+      {
+        byte tmp = left.get(a + k);
+        left.put(a + k, right.get(b + k));
+        right.put(b + k, tmp);
+      } // for each remaining byte
+  } // swapRecords(Segments, int, int)
+
+  /**
+   * Map all of the complete records in the file in channel, in
+   * segments of recordsPerSegment records.  Segment s starts at byte
+   * s * recordsPerSegment * recordSize, which may be well past 2GB.
+   *
+   * @throws IOException
+   *   If the file has more than Integer.MAX_VALUE records.
+   */
+  Segments map(FileChannel channel, FileChannel.MapMode mode)
+    throws IOException
+  {
+    long count = channel.size() / this.recordSize;
+    if (count > Integer.MAX_VALUE)
+      throw new IOException("Too many records to sort: " + count);
+    long per = this.recordsPerSegment;
+    ByteBuffer[] buffers = new ByteBuffer[(int) ((count + per - 1) / per)];
+    for (int s = 0; s < buffers.length; s++)
+      {
+        long first = s * per;
+        long records = Math.min(per, count - first);
+        buffers[s] = channel.map(mode, first * this.recordSize,
+                                 records * this.recordSize);
+      } // for each segment
+    return new Segments(buffers, this.recordsPerSegment, this.recordSize,
+                        (int) count);
+  } // map(FileChannel, FileChannel.MapMode)
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * Records split across one or more buffers.  Every buffer but the
+   * last holds exactly perSegment records.
+   */
+  static class Segments
+  {
+    ByteBuffer[] buffers;
+    int perSegment;
+    int recordSize;
+    int count;
+
+    public Segments(ByteBuffer[] buffers, int perSegment, int recordSize,
+                    int count)
+    {
+      this.buffers = buffers;
+      this.perSegment = perSegment;
+      this.recordSize = recordSize;
+      this.count = count;
+    } // Segments(ByteBuffer[], int, int, int)
+
+    /**
+     * Treat all of buffer, up to its limit, as one segment of records
+     * of the given size.  We work on a big-endian view of buffer,
+     * whatever the caller's byte order, since compareKey relies on it.
+     */
+    public Segments(ByteBuffer buffer, int recordSize)
+    {
+      this.buffers =
+          new ByteBuffer[] { buffer.duplicate().order(ByteOrder.BIG_ENDIAN) };
+      this.count = buffer.limit() / recordSize;
+      this.perSegment = Math.max(1, this.count);
+      this.recordSize = recordSize;
+    } // Segments(ByteBuffer, int)
+
+    /**
+     * Get the buffer that holds record i.
+     */
+    public ByteBuffer segment(int i)
+    {
+      return this.buffers[i / this.perSegment];
+    } // segment(int)
+
+    /**
+     * Get the offset of record i within its buffer.
+     */
+    public int offset(int i)
+    {
+      return (i % this.perSegment) * this.recordSize;
+    } // offset(int)
+  } // class Segments
+} // class MappedRecordSorter
@@ -0,0 +1,206 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+/**
+ * Tests of the memory-mapped record sorter.
+ */
+public class MappedRecordSorterTests
+{
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The size of the records we sort: a 4-byte id, a 12-byte key, and
+   * 4 more bytes of payload.
+   */
+  public static final int RECORD_SIZE = 20;
+
+  // +-----------+-------------------------------------------------------
+  // | Utilities |
+  // +-----------+
+
+  /**
+   * Build n records with random keys.  Keys are drawn from a small
+   * range so that there are duplicates.  The payload is a copy of the
+   * id, so we can tell whether records stay intact.
+   */
+  public static byte[] randomRecords(int n)
+  {
+    ByteBuffer records = ByteBuffer.allocate(n * RECORD_SIZE);
+    for (int i = 0; i < n; i++)
+      {
+        records.putInt(i);
+        records.putLong(SamTest.generator.nextInt(n) - n/2);
+        records.putInt(SamTest.generator.nextInt(4));
+        records.putInt(i);
+      } // for
+    return records.array();
+  } // randomRecords(int)
+
+  /**
+   * Compare the keys of two records as unsigned bytes.
+   */
+  public static int compareKeys(ByteBuffer records, int i, int j)
+  {
+    for (int k = 4; k < 16; k++)
+      {
+        int c = (records.get(i * RECORD_SIZE + k) & 0xFF)
+                - (records.get(j * RECORD_SIZE + k) & 0xFF);
+        if (c != 0)
+          return c;
+      } // for
+    return 0;
+  } // compareKeys(ByteBuffer, int, int)
+
+  /**
+   * Make sure that the records in records are sorted and intact.
+   */
+  public static void checkSorted(ByteBuffer records, int n)
+  {
+    boolean[] seen = new boolean[n];
+    for (int i = 0; i < n; i++)
+      {
+        int id = records.getInt(i * RECORD_SIZE);
+        assertEquals(id, records.getInt(i * RECORD_SIZE + 16));
+        assertFalse(seen[id]);
+        seen[id] = true;
+        if (i > 0)
+          assertTrue(compareKeys(records, i - 1, i) <= 0);
+      } // for
+  } // checkSorted(ByteBuffer, int)
+
+  // +-------+-----------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Sort records in a heap buffer, in place and by index.
+   */
+  @Test
+  public void testBuffer()
+  {
+    MappedRecordSorter sorter = new MappedRecordSorter(RECORD_SIZE, 4, 12);
+    for (int i = 0; i < SamTest.NUM_RANDOM_ARRAYS; i++)
+      {
+        int n = SamTest.generator.nextInt(SamTest.MAX_RANDOM_ARRAY_SIZE);
+        byte[] bytes = randomRecords(n);
+        ByteBuffer original = ByteBuffer.wrap(bytes.clone());
+
+        int[] index = sorter.sortedIndex(ByteBuffer.wrap(bytes));
+        assertArrayEquals(original.array(), bytes);
+        for (int j = 1; j < n; j++)
+          assertTrue(compareKeys(original, index[j - 1], index[j]) <= 0);
+
+        ByteBuffer records = ByteBuffer.wrap(bytes);
+        sorter.sort(records);
+        checkSorted(records, n);
+      } // for
+  } // testBuffer()
+
+  /**
+   * The key is compared as bytes, so a little-endian buffer sorts the
+   * same way as a big-endian one.
+   */
+  @Test
+  public void testLittleEndian()
+  {
+    MappedRecordSorter sorter = new MappedRecordSorter(RECORD_SIZE, 4, 12);
+    int n = 200;
+    byte[] bytes = randomRecords(n);
+    ByteBuffer original = ByteBuffer.wrap(bytes.clone());
+
+    int[] index =
+        sorter.sortedIndex(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN));
+    for (int j = 1; j < n; j++)
+      assertTrue(compareKeys(original, index[j - 1], index[j]) <= 0);
+
+    ByteBuffer records = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    sorter.sort(records);
+    assertEquals(ByteOrder.LITTLE_ENDIAN, records.order());
+    checkSorted(ByteBuffer.wrap(bytes), n);
+  } // testLittleEndian()
+
+  /**
+   * Sort records in a file.
+   */
+  @Test
+  public void testFile()
+    throws IOException
+  {
+    int n = 5000;
+    File file = File.createTempFile("records", ".bin");
+    try
+      {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.write(randomRecords(n));
+        raf.close();
+
+        MappedRecordSorter sorter = new MappedRecordSorter(RECORD_SIZE, 4, 12);
+        sorter.sort(file);
+
+        byte[] bytes = new byte[n * RECORD_SIZE];
+        raf = new RandomAccessFile(file, "r");
+        raf.readFully(bytes);
+        raf.close();
+        ByteBuffer records = ByteBuffer.wrap(bytes);
+        checkSorted(records, n);
+
+        // The index of a sorted file should also put keys in order.
+        int[] index = sorter.sortedIndex(file);
+        for (int i = 1; i < n; i++)
+          assertTrue(compareKeys(records, index[i - 1], index[i]) <= 0);
+      } // try
+    finally
+      {
+        file.delete();
+      } // finally
+  } // testFile()
+
+  /**
+   * Sort a file mapped as many small segments, so that partitions and
+   * swaps cross segment boundaries.
+   */
+  @Test
+  public void testSegments()
+    throws IOException
+  {
+    int n = 5003;
+    byte[] bytes = randomRecords(n);
+    ByteBuffer original = ByteBuffer.wrap(bytes.clone());
+    File file = File.createTempFile("records", ".bin");
+    try
+      {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.write(bytes);
+        // A partial record at the end is left alone.
+        raf.write(new byte[RECORD_SIZE - 1]);
+        raf.close();
+
+        // Seven records, plus some slack, per segment.
+        MappedRecordSorter sorter =
+            new MappedRecordSorter(RECORD_SIZE, 4, 12, 7 * RECORD_SIZE + 5);
+        int[] index = sorter.sortedIndex(file);
+        assertEquals(n, index.length);
+        for (int i = 1; i < n; i++)
+          assertTrue(compareKeys(original, index[i - 1], index[i]) <= 0);
+
+        sorter.sort(file);
+        raf = new RandomAccessFile(file, "r");
+        assertEquals(n * RECORD_SIZE + RECORD_SIZE - 1, raf.length());
+        raf.readFully(bytes);
+        raf.close();
+        checkSorted(ByteBuffer.wrap(bytes), n);
+      } // try
+    finally
+      {
+        file.delete();
+      } // finally
+  } // testSegments()
+} // class MappedRecordSorterTests
@@ -0,0 +1,19 @@
+import java.util.Comparator;
+
+/**
+ * A way to choose the pivot for partitioning.  See Pivots for some
+ * common strategies.
+ */
+public interface PivotStrategy
+{
+  /**
+   * Choose the index of the pivot for the subarray of values from lb
+   * (inclusive) to ub (exclusive).
+   *
+   * @pre
+   *   lb < ub
+   * @post
+   *   lb <= result < ub
+   */
+  public <T> int choose(T[] values, Comparator<T> order, int lb, int ub);
+} // interface PivotStrategy
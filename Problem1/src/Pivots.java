@@ -0,0 +1,134 @@
+import java.util.Comparator;
+import java.util.SplittableRandom;
+
+/**
+ * Common pivot strategies.
+ */
+public class Pivots
+{
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Use the first element.  Cheap, but quadratic on sorted input.
+   */
+  public static final PivotStrategy FIRST = new PivotStrategy()
+    {
+      public <T> int choose(T[] values, Comparator<T> order, int lb, int ub)
+      {
+        return lb;
+      } // choose(T[], Comparator<T>, int, int)
+    }; // new PivotStrategy
+
+  /**
+   * Use the middle element, as Quicksorter.qsort does.
+   */
+  public static final PivotStrategy MIDDLE = new PivotStrategy()
+    {
+      public <T> int choose(T[] values, Comparator<T> order, int lb, int ub)
+      {
+        return lb + (ub - lb) / 2;
+      } // choose(T[], Comparator<T>, int, int)
+    }; // new PivotStrategy
+
+  /**
+   * Use the median of the first, middle, and last elements.
+   */
+  public static final PivotStrategy MEDIAN_OF_THREE = new PivotStrategy()
+    {
+      public <T> int choose(T[] values, Comparator<T> order, int lb, int ub)
+      {
+        return Quicksorter.medianOfThree(values, order, lb, lb + (ub - lb) / 2,
+                                         ub - 1);
+      } // choose(T[], Comparator<T>, int, int)
+    }; // new PivotStrategy
+
+  /**
+   * Use Tukey's ninther: the median of the medians of three groups of
+   * three elements spread across the subarray.  Falls back to the
+   * median of three for small subarrays.
+   */
+  public static final PivotStrategy NINTHER = new PivotStrategy()
+    {
+      public <T> int choose(T[] values, Comparator<T> order, int lb, int ub)
+      {
+        int n = ub - lb;
+        if (n < 9)
+          return MEDIAN_OF_THREE.choose(values, order, lb, ub);
+        int step = n / 8;
+        int mid = lb + n / 2;
+        int hi = ub - 1;
+        return Quicksorter.medianOfThree(values, order,
+            Quicksorter.medianOfThree(values, order, lb, lb + step,
+                                      lb + 2*step),
+            Quicksorter.medianOfThree(values, order, mid - step, mid,
+                                      mid + step),
+            Quicksorter.medianOfThree(values, order, hi - 2*step, hi - step,
+                                      hi));
+      } // choose(T[], Comparator<T>, int, int)
+    }; // new PivotStrategy
+
+  /**
+   * The default strategy for sorts that take a strategy: the middle
+   * element for small subarrays, the median of three for medium ones,
+   * and the ninther for large ones.
+   */
+  public static final PivotStrategy DEFAULT =
+      bySize(MIDDLE, 64, MEDIAN_OF_THREE, 4096, NINTHER);
+
+  // +----------------+--------------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Create a strategy that picks a uniformly random element, using a
+   * generator seeded with seed so that runs can be repeated.  The
+   * strategy is not safe to use from several threads at once.
+   */
+  public static PivotStrategy random(long seed)
+  {
+    return random(new SplittableRandom(seed));
+  } // random(long)
+
+  /**
+   * Create a strategy that picks a uniformly random element, using
+   * generator.
+   */
+  public static PivotStrategy random(final SplittableRandom generator)
+  {
+    return new PivotStrategy()
+      {
+        public <T> int choose(T[] values, Comparator<T> order, int lb, int ub)
+        {
+          return generator.nextInt(lb, ub);
+        } // choose(T[], Comparator<T>, int, int)
+      }; // new PivotStrategy
+  } // random(SplittableRandom)
+
+  /**
+   * Create a strategy that uses small for subarrays of fewer than
+   * mediumSize elements, large for subarrays of at least largeSize
+   * elements, and medium for the rest.
+   */
+  public static PivotStrategy bySize(final PivotStrategy small,
+                                     final int mediumSize,
+                                     final PivotStrategy medium,
+                                     final int largeSize,
+                                     final PivotStrategy large)
+  {
+    return new PivotStrategy()
+      {
+        public <T> int choose(T[] values, Comparator<T> order, int lb, int ub)
+        {
+          int n = ub - lb;
+          if (n < mediumSize)
+            return small.choose(values, order, lb, ub);
+          else if (n < largeSize)
+            return medium.choose(values, order, lb, ub);
+          else
+            return large.choose(values, order, lb, ub);
+        } // choose(T[], Comparator<T>, int, int)
+      }; // new PivotStrategy
+  } // bySize(PivotStrategy, int, PivotStrategy, int, PivotStrategy)
+} // class Pivots
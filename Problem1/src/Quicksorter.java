@@ -1,4 +1,12 @@
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
 
 /**
  * An implementation of Quicksort without the baggage of interfaces and such.
@@ -6,26 +14,2450 @@ import java.util.Comparator;
  */
 public class Quicksorter
 {
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The size below which the parallel sort stops forking new tasks
+   * and simply sorts sequentially.
+   */
+  public static final int PARALLEL_THRESHOLD = 8192;
+
+  /**
+   * The size at or below which the adaptive sort uses insertion sort.
+   */
+  public static final int INSERTION_THRESHOLD = 16;
+
+  /**
+   * The most elements the adaptive sort will shift while trying to
+   * finish a nearly-sorted subarray with insertion sort before giving
+   * up and partitioning instead.
+   */
+  public static final int PARTIAL_INSERTION_LIMIT = 8;
+
+  /**
+   * The adaptive sort sorts an unsorted suffix separately and merges it
+   * into the sorted prefix when the suffix is at most 1/APPEND_RATIO of
+   * the subarray.  A ratio of 2 also catches organ-pipe input, whose
+   * second half is a descending run of its own.
+   */
+  public static final int APPEND_RATIO = 2;
+
+  /**
+   * The number of elements the block partition classifies at a time.
+   */
+  public static final int BLOCK_SIZE = 64;
+
+  /**
+   * The size at or above which the block, vector, adaptive, and
+   * stable sorts pick their pivot with Tukey's ninther rather than the
+   * median of three.
+   */
+  public static final int NINTHER_THRESHOLD = 128;
+
+  /**
+   * The largest scratch buffer the stable sort keeps for reuse on each
+   * thread.  Larger sorts allocate a buffer of their own.
+   */
+  public static final int MAX_RETAINED_SCRATCH = 1 << 16;
+
+  // +---------------+---------------------------------------------------
+  // | Static Fields |
+  // +---------------+
+
+  /**
+   * The vectorized partition kernel for ints, or null if it (or the
+   * jdk.incubator.vector module it needs) is not available.
+   */
+  static final IntPartitioner VECTOR_PARTITIONER = loadVectorPartitioner();
+
+  /**
+   * The scratch buffer each thread reuses for stable sorts, or null if
+   * the thread has none or is currently using it.
+   */
+  static final ThreadLocal<Object[]> STABLE_SCRATCH = new ThreadLocal<Object[]>();
+
   // +----------------+--------------------------------------------------
   // | Static Methods |
   // +----------------+
 
   /**
-   * Sort values in place using order to compare values.
+   * Sort values in place using order to compare values.
+   */
+  public static <T> void qsort(T[] values, Comparator<T> order)
+  {
+    qsort(values, order, 0, values.length);
+  } // qsort(T[], Comparator<T>)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive) using
+   * order to compare values.
+   */
+  public static <T> void qsort(T[] values, Comparator<T> order, int lb, int ub)
+  {
+    // Subarrays of size 0 or 1 are already sorted.
+    if (ub - lb <= 1)
+      return;
+    // Partition, then sort the small and large values.  The values
+    // equal to the pivot are already in place.
+    Range mid = partition(values, order, lb, ub);
+    qsort(values, order, lb, mid.lb);
+    qsort(values, order, mid.ub, ub);
+  } // qsort(T[], Comparator<T>, int, int)
+
+  /**
+   * Sort values in place using order to compare values, recording
+   * what the sort did in stats.
+   */
+  public static <T> void qsort(T[] values, Comparator<T> order,
+                               SortStats stats)
+  {
+    qsort(values, order, 0, values.length, stats);
+  } // qsort(T[], Comparator<T>, SortStats)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using order to compare values, recording what the sort did in
+   * stats.
+   */
+  public static <T> void qsort(T[] values, Comparator<T> order, int lb,
+                               int ub, SortStats stats)
+  {
+    long start = System.nanoTime();
+    qsort(values, order, lb, ub, stats, 1);
+    stats.call(System.nanoTime() - start);
+  } // qsort(T[], Comparator<T>, int, int, SortStats)
+
+  /**
+   * Sort values in place using order to compare values and pivots to
+   * choose the pivot for each partition.
+   */
+  public static <T> void qsort(T[] values, Comparator<T> order,
+                               PivotStrategy pivots)
+  {
+    qsort(values, order, 0, values.length, pivots);
+  } // qsort(T[], Comparator<T>, PivotStrategy)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using order to compare values and pivots to choose the pivot for
+   * each partition.
+   */
+  public static <T> void qsort(T[] values, Comparator<T> order, int lb,
+                               int ub, PivotStrategy pivots)
+  {
+    if (ub - lb <= 1)
+      return;
+    T pivot = values[pivots.choose(values, order, lb, ub)];
+    Range mid = partition(values, order, lb, ub, pivot);
+    qsort(values, order, lb, mid.lb, pivots);
+    qsort(values, order, mid.ub, ub, pivots);
+  } // qsort(T[], Comparator<T>, int, int, PivotStrategy)
+
+  /**
+   * Sort values in place into their natural order.  Calls compareTo
+   * directly, rather than through a Comparator.
+   */
+  public static <T extends Comparable<? super T>> void qsort(T[] values)
+  {
+    qsort(values, 0, values.length);
+  } // qsort(T[])
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * into their natural order.
+   */
+  public static <T extends Comparable<? super T>> void qsort(T[] values,
+                                                             int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(values, lb, ub);
+    qsort(values, lb, mid.lb);
+    qsort(values, mid.ub, ub);
+  } // qsort(T[], int, int)
+
+  /**
+   * Sort strings in place into their natural order.  Since String is
+   * final, the comparisons can be inlined.
+   */
+  public static void qsort(String[] values)
+  {
+    qsort(values, 0, values.length);
+  } // qsort(String[])
+
+  /**
+   * Sort the subarray of strings from lb (inclusive) to ub (exclusive)
+   * into their natural order.
+   */
+  public static void qsort(String[] values, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(values, lb, ub);
+    qsort(values, lb, mid.lb);
+    qsort(values, mid.ub, ub);
+  } // qsort(String[], int, int)
+
+  /**
+   * Sort Integers in place, smallest to largest, comparing the
+   * underlying ints directly.
+   */
+  public static void qsort(Integer[] values)
+  {
+    qsort(values, 0, values.length);
+  } // qsort(Integer[])
+
+  /**
+   * Sort the subarray of Integers from lb (inclusive) to ub (exclusive),
+   * smallest to largest.
+   */
+  public static void qsort(Integer[] values, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(values, lb, ub);
+    qsort(values, lb, mid.lb);
+    qsort(values, mid.ub, ub);
+  } // qsort(Integer[], int, int)
+
+  /**
+   * Sort Longs in place, smallest to largest, comparing the underlying
+   * longs directly.
+   */
+  public static void qsort(Long[] values)
+  {
+    qsort(values, 0, values.length);
+  } // qsort(Long[])
+
+  /**
+   * Sort the subarray of Longs from lb (inclusive) to ub (exclusive),
+   * smallest to largest.
+   */
+  public static void qsort(Long[] values, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(values, lb, ub);
+    qsort(values, lb, mid.lb);
+    qsort(values, mid.ub, ub);
+  } // qsort(Long[], int, int)
+
+  /**
+   * Sort an array of ints in place, smallest to largest.
+   */
+  public static void qsort(int[] values)
+  {
+    qsort(values, 0, values.length);
+  } // qsort(int[])
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * smallest to largest.
+   */
+  public static void qsort(int[] values, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(values, lb, ub);
+    qsort(values, lb, mid.lb);
+    qsort(values, mid.ub, ub);
+  } // qsort(int[], int, int)
+
+  /**
+   * Sort an array of longs in place, smallest to largest.
+   */
+  public static void qsort(long[] values)
+  {
+    qsort(values, 0, values.length);
+  } // qsort(long[])
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * smallest to largest.
+   */
+  public static void qsort(long[] values, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(values, lb, ub);
+    qsort(values, lb, mid.lb);
+    qsort(values, mid.ub, ub);
+  } // qsort(long[], int, int)
+
+  /**
+   * Sort an array of doubles in place, smallest to largest.  Uses the
+   * same total order as Double.compare, so -0.0 precedes 0.0 and NaN
+   * values end up at the end.
+   */
+  public static void qsort(double[] values)
+  {
+    qsort(values, 0, values.length);
+  } // qsort(double[])
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * smallest to largest.
+   */
+  public static void qsort(double[] values, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(values, lb, ub);
+    qsort(values, lb, mid.lb);
+    qsort(values, mid.ub, ub);
+  } // qsort(double[], int, int)
+
+  /**
+   * Sort keys in place, smallest to largest, making the same
+   * rearrangements to payload, so that payload[i] still goes with
+   * keys[i] afterwards.
+   *
+   * @throws IllegalArgumentException
+   *   If keys and payload have different lengths.
+   */
+  public static void qsort(long[] keys, Object[] payload)
+  {
+    if (keys.length != payload.length)
+      throw new IllegalArgumentException("keys and payload differ in length");
+    qsort(keys, payload, 0, keys.length);
+  } // qsort(long[], Object[])
+
+  /**
+   * Sort the subarray of keys from lb (inclusive) to ub (exclusive),
+   * smallest to largest, making the same rearrangements to payload.
+   */
+  public static void qsort(long[] keys, Object[] payload, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(keys, payload, lb, ub);
+    qsort(keys, payload, lb, mid.lb);
+    qsort(keys, payload, mid.ub, ub);
+  } // qsort(long[], Object[], int, int)
+
+  /**
+   * Sort keys in place, smallest to largest, making the same
+   * rearrangements to payload, so that payload[i] still goes with
+   * keys[i] afterwards.
+   *
+   * @throws IllegalArgumentException
+   *   If keys and payload have different lengths.
+   */
+  public static void qsort(int[] keys, int[] payload)
+  {
+    if (keys.length != payload.length)
+      throw new IllegalArgumentException("keys and payload differ in length");
+    qsort(keys, payload, 0, keys.length);
+  } // qsort(int[], int[])
+
+  /**
+   * Sort the subarray of keys from lb (inclusive) to ub (exclusive),
+   * smallest to largest, making the same rearrangements to payload.
+   */
+  public static void qsort(int[] keys, int[] payload, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(keys, payload, lb, ub);
+    qsort(keys, payload, lb, mid.lb);
+    qsort(keys, payload, mid.ub, ub);
+  } // qsort(int[], int[], int, int)
+
+  /**
+   * Sort values in place using order to compare values, partitioning
+   * around two pivots rather than one.
+   */
+  public static <T> void dualPivotQsort(T[] values, Comparator<T> order)
+  {
+    dualPivotQsort(values, order, 0, values.length);
+  } // dualPivotQsort(T[], Comparator<T>)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using order to compare values, partitioning around two pivots
+   * rather than one.
+   */
+  public static <T> void dualPivotQsort(T[] values, Comparator<T> order,
+                                        int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    int hi = ub - 1;
+    // Take the pivots from the two thirds, rather than the ends, so that
+    // sorted input does not go quadratic.
+    int third = (ub - lb) / 3;
+    swap(values, lb, lb + third);
+    swap(values, hi, hi - third);
+    int c = order.compare(values[lb], values[hi]);
+    if (c > 0)
+      swap(values, lb, hi);
+    else if (c == 0)
+      {
+        // Equal pivots would put every copy of the pivot on one side,
+        // so fall back to DNF for this level.
+        Range mid = partition(values, order, lb, ub);
+        dualPivotQsort(values, order, lb, mid.lb);
+        dualPivotQsort(values, order, mid.ub, ub);
+        return;
+      } // if the pivots are equal
+    Range mid = partition(values, order, lb, ub, values[lb], values[hi]);
+    dualPivotQsort(values, order, lb, mid.lb - 1);
+    dualPivotQsort(values, order, mid.ub + 1, ub);
+    // A large middle part is likely to be full of copies of the
+    // pivots, which would otherwise end up there again at every level.
+    if (2 * (mid.ub - mid.lb) > ub - lb)
+      mid = sweepPivots(values, order, mid.lb, mid.ub, values[mid.lb - 1],
+                        values[mid.ub]);
+    dualPivotQsort(values, order, mid.lb, mid.ub);
+  } // dualPivotQsort(T[], Comparator<T>, int, int)
+
+  /**
+   * Sort an array of ints in place, smallest to largest, partitioning
+   * around two pivots rather than one.
+   */
+  public static void dualPivotQsort(int[] values)
+  {
+    dualPivotQsort(values, 0, values.length);
+  } // dualPivotQsort(int[])
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * smallest to largest, partitioning around two pivots rather than one.
+   */
+  public static void dualPivotQsort(int[] values, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    int hi = ub - 1;
+    int third = (ub - lb) / 3;
+    swap(values, lb, lb + third);
+    swap(values, hi, hi - third);
+    if (values[lb] > values[hi])
+      swap(values, lb, hi);
+    else if (values[lb] == values[hi])
+      {
+        Range mid = partition(values, lb, ub);
+        dualPivotQsort(values, lb, mid.lb);
+        dualPivotQsort(values, mid.ub, ub);
+        return;
+      } // if the pivots are equal
+    Range mid = partition(values, lb, ub, values[lb], values[hi]);
+    dualPivotQsort(values, lb, mid.lb - 1);
+    dualPivotQsort(values, mid.ub + 1, ub);
+    if (2 * (mid.ub - mid.lb) > ub - lb)
+      mid = sweepPivots(values, mid.lb, mid.ub, values[mid.lb - 1],
+                        values[mid.ub]);
+    dualPivotQsort(values, mid.lb, mid.ub);
+  } // dualPivotQsort(int[], int, int)
+
+  /**
+   * Sort values in place using order to compare values, switching to
+   * heapsort for any subarray where quicksort recurses too deeply.  That
+   * guarantees O(n log n) time even on adversarial input.
+   */
+  public static <T> void introsort(T[] values, Comparator<T> order)
+  {
+    introsort(values, order, 0, values.length);
+  } // introsort(T[], Comparator<T>)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using order to compare values, switching to heapsort once the
+   * recursion depth exceeds 2*log2(ub-lb).
+   */
+  public static <T> void introsort(T[] values, Comparator<T> order,
+                                   int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    introsort(values, order, lb, ub, 2 * log2(ub - lb));
+  } // introsort(T[], Comparator<T>, int, int)
+
+  /**
+   * Sort values in place using order to compare values, without
+   * recursion.
+   */
+  public static <T> void iterativeQsort(T[] values, Comparator<T> order)
+  {
+    iterativeQsort(values, order, 0, values.length);
+  } // iterativeQsort(T[], Comparator<T>)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using order to compare values, without recursion.  Pending
+   * subarrays are kept on an explicit stack.  Since we always push the
+   * larger side and continue with the smaller one, the stack never
+   * holds more than log2(ub-lb)+1 ranges.
+   */
+  public static <T> void iterativeQsort(T[] values, Comparator<T> order,
+                                        int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range[] stack = new Range[log2(ub - lb) + 1];
+    for (int i = 0; i < stack.length; i++)
+      stack[i] = new Range(0, 0);
+    int top = 0;
+    while (true)
+      {
+        if (ub - lb <= 1)
+          {
+            // Nothing left to do here, so move on to the most recently
+            // deferred range.
+            if (top == 0)
+              return;
+            Range next = stack[--top];
+            lb = next.lb;
+            ub = next.ub;
+            continue;
+          } // if the current range is sorted
+        Range mid = partition(values, order, lb, ub);
+        Range pending = stack[top++];
+        if (mid.lb - lb < ub - mid.ub)
+          {
+            pending.lb = mid.ub;
+            pending.ub = ub;
+            ub = mid.lb;
+          } // if the left side is smaller
+        else
+          {
+            pending.lb = lb;
+            pending.ub = mid.lb;
+            lb = mid.ub;
+          } // if the right side is smaller
+      } // while
+  } // iterativeQsort(T[], Comparator<T>, int, int)
+
+  /**
+   * Rearrange values so that values[k] holds the value that would be
+   * there if values were sorted, every value before it is no larger,
+   * and every value after it is no smaller.  Returns that value.  Takes
+   * expected linear time.
+   *
+   * @pre
+   *   0 <= k < values.length
+   */
+  public static <T> T select(T[] values, Comparator<T> order, int k)
+  {
+    int lb = 0;
+    int ub = values.length;
+    while (ub - lb > 1)
+      {
+        Range mid = partition(values, order, lb, ub);
+        if (k < mid.lb)
+          ub = mid.lb;
+        else if (k >= mid.ub)
+          lb = mid.ub;
+        else
+          break;
+      } // while
+    return values[k];
+  } // select(T[], Comparator<T>, int)
+
+  /**
+   * Rearrange values so that values[0..k) holds the k smallest values
+   * in sorted order.  The order of the remaining values is unspecified.
+   */
+  public static <T> void partialSort(T[] values, Comparator<T> order, int k)
+  {
+    partialSort(values, order, 0, values.length, k);
+  } // partialSort(T[], Comparator<T>, int)
+
+  /**
+   * Sort values in place by the keys that key extracts from them, using
+   * order to compare keys.  Each key is extracted exactly once, which
+   * is much cheaper than a comparator that recomputes keys on every
+   * comparison.
+   */
+  public static <T, K> void qsortByKey(T[] values, Function<T, K> key,
+                                       Comparator<K> order)
+  {
+    @SuppressWarnings("unchecked")
+    K[] keys = (K[]) new Object[values.length];
+    for (int i = 0; i < values.length; i++)
+      keys[i] = key.apply(values[i]);
+    qsortByKey(keys, order, values, 0, values.length);
+  } // qsortByKey(T[], Function<T, K>, Comparator<K>)
+
+  /**
+   * Sort values in place, smallest key to largest, by the long keys
+   * that key extracts from them.  The keys are kept in an unboxed
+   * array.
+   */
+  public static <T> void qsortByLongKey(T[] values, ToLongFunction<T> key)
+  {
+    long[] keys = new long[values.length];
+    for (int i = 0; i < values.length; i++)
+      keys[i] = key.applyAsLong(values[i]);
+    qsort(keys, values, 0, values.length);
+  } // qsortByLongKey(T[], ToLongFunction<T>)
+
+  /**
+   * Sort values in place, smallest key to largest, by the double keys
+   * that key extracts from them.  The keys are kept in an unboxed
+   * array and compared as in Double.compare.
+   */
+  public static <T> void qsortByDoubleKey(T[] values,
+                                          ToDoubleFunction<T> key)
+  {
+    double[] keys = new double[values.length];
+    for (int i = 0; i < values.length; i++)
+      keys[i] = key.applyAsDouble(values[i]);
+    qsort(keys, values, 0, values.length);
+  } // qsortByDoubleKey(T[], ToDoubleFunction<T>)
+
+  /**
+   * Compute the permutation that would sort values using order.  That
+   * is, values[result[0]], values[result[1]], ... are in order.  values
+   * itself is not changed.
+   */
+  public static <T> int[] argsort(T[] values, Comparator<T> order)
+  {
+    int[] indices = new int[values.length];
+    for (int i = 0; i < indices.length; i++)
+      indices[i] = i;
+    argsort(values, order, indices, 0, indices.length);
+    return indices;
+  } // argsort(T[], Comparator<T>)
+
+  /**
+   * Sort values in place using order to compare values, taking
+   * advantage of any existing order.  Sorted and reverse-sorted input
+   * take linear time, as do organ-pipe input and sorted input with a
+   * few values appended.
+   */
+  public static <T> void adaptiveQsort(T[] values, Comparator<T> order)
+  {
+    adaptiveQsort(values, order, 0, values.length);
+  } // adaptiveQsort(T[], Comparator<T>)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using order to compare values, taking advantage of any existing
+   * order.
+   */
+  public static <T> void adaptiveQsort(T[] values, Comparator<T> order,
+                                       int lb, int ub)
+  {
+    adaptiveQsort(values, order, lb, ub, log2(ub - lb + 1));
+  } // adaptiveQsort(T[], Comparator<T>, int, int)
+
+  /**
+   * Sort values in place using order to compare values, using block
+   * partitioning.
+   */
+  public static <T> void blockQsort(T[] values, Comparator<T> order)
+  {
+    blockQsort(values, order, 0, values.length);
+  } // blockQsort(T[], Comparator<T>)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using order to compare values, using block partitioning.  Rather
+   * than swapping each misplaced element as soon as it is found, block
+   * partitioning compares a whole block of elements with the pivot,
+   * recording the offsets of the misplaced ones, and then swaps them
+   * all at once.  The comparison loop has no data-dependent branches,
+   * so it avoids branch mispredictions on random input.
+   */
+  public static <T> void blockQsort(T[] values, Comparator<T> order, int lb,
+                                    int ub)
+  {
+    blockQsort(values, order, lb, ub, new int[BLOCK_SIZE],
+               new int[BLOCK_SIZE], log2(ub - lb + 1));
+  } // blockQsort(T[], Comparator<T>, int, int)
+
+  /**
+   * Sort an array of ints in place, smallest to largest, using block
+   * partitioning.
+   */
+  public static void blockQsort(int[] values)
+  {
+    blockQsort(values, 0, values.length);
+  } // blockQsort(int[])
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * smallest to largest, using block partitioning.
+   */
+  public static void blockQsort(int[] values, int lb, int ub)
+  {
+    blockQsort(values, lb, ub, new int[BLOCK_SIZE], new int[BLOCK_SIZE],
+               log2(ub - lb + 1));
+  } // blockQsort(int[], int, int)
+
+  /**
+   * Create an iterator that returns the values in order, doing only as
+   * much partitioning as it needs to find each one.  Reading the first
+   * k values takes expected O(n + k log k) time.
+   *
+   * The iterator rearranges values in place as it goes, so values
+   * should not be changed or otherwise used while the iterator is in
+   * use.  Once every value has been read, values is sorted.
+   */
+  public static <T> Iterator<T> lazySorted(T[] values, Comparator<T> order)
+  {
+    return new LazySortedIterator<T>(values, order);
+  } // lazySorted(T[], Comparator<T>)
+
+  /**
+   * Sort an array of ints in place, smallest to largest, partitioning
+   * with SIMD instructions when the Vector API is available.
+   */
+  public static void vectorQsort(int[] values)
+  {
+    vectorQsort(values, 0, values.length);
+  } // vectorQsort(int[])
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * smallest to largest, partitioning with SIMD instructions when the
+   * Vector API is available.  Otherwise, this is the same as
+   * blockQsort.
+   */
+  public static void vectorQsort(int[] values, int lb, int ub)
+  {
+    if (VECTOR_PARTITIONER == null)
+      blockQsort(values, lb, ub);
+    else
+      vectorQsort(values, lb, ub, VECTOR_PARTITIONER,
+                  new int[ub - lb + IntPartitioner.SCRATCH_PADDING],
+                  log2(ub - lb + 1));
+  } // vectorQsort(int[], int, int)
+
+  /**
+   * Sort values using order to compare values and remove duplicates.
+   * Returns the number of distinct values, d.  Afterwards,
+   * values[0..d) holds one copy of each distinct value, in order.  The
+   * remaining copies are left, in no particular order, in
+   * values[d..values.length).  Duplicates are dropped as soon as
+   * partitioning groups them together, so no separate pass is needed.
+   */
+  public static <T> int sortDistinct(T[] values, Comparator<T> order)
+  {
+    return sortDistinct(values, order, 0, values.length);
+  } // sortDistinct(T[], Comparator<T>)
+
+  /**
+   * Sort strings in place into their natural order using multikey
+   * (three-way radix) quicksort.
+   */
+  public static void multikeyQsort(String[] values)
+  {
+    multikeyQsort(values, 0, values.length);
+  } // multikeyQsort(String[])
+
+  /**
+   * Sort the subarray of strings from lb (inclusive) to ub (exclusive)
+   * into their natural order using multikey quicksort.  Rather than
+   * comparing whole strings, each partition looks at only one
+   * character, using DNF to split the strings by that character.  Only
+   * strings whose characters match the pivot's move on to the next
+   * character.  So long shared prefixes are examined once rather than
+   * at every level.
+   */
+  public static void multikeyQsort(String[] values, int lb, int ub)
+  {
+    multikeyQsort(values, lb, ub, 0);
+  } // multikeyQsort(String[], int, int)
+
+  /**
+   * Sort values in place using order to compare values, keeping equal
+   * values in their original order.
+   */
+  public static <T> void stableQsort(T[] values, Comparator<T> order)
+  {
+    stableQsort(values, order, 0, values.length);
+  } // stableQsort(T[], Comparator<T>)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using order to compare values, keeping equal values in their
+   * original order.  Each partition copies the equal and larger values
+   * out to a scratch buffer and back, so the sort needs ub-lb extra
+   * references.  The buffer is reused by later sorts on the same thread
+   * unless it is larger than MAX_RETAINED_SCRATCH.
+   */
+  public static <T> void stableQsort(T[] values, Comparator<T> order, int lb,
+                                     int ub)
+  {
+    int n = ub - lb;
+    Object[] scratch = STABLE_SCRATCH.get();
+    if ((scratch == null) || (scratch.length < n))
+      scratch = new Object[n];
+    else
+      // Take it, in case order sorts something too.
+      STABLE_SCRATCH.set(null);
+    try
+      {
+        stableQsort(values, order, lb, ub, scratch, log2(n + 1));
+      } // try
+    finally
+      {
+        // Don't hold on to the values.
+        Arrays.fill(scratch, 0, n, null);
+        if (scratch.length <= MAX_RETAINED_SCRATCH)
+          STABLE_SCRATCH.set(scratch);
+      } // finally
+  } // stableQsort(T[], Comparator<T>, int, int)
+
+  /**
+   * Merge sorted runs of values into a single sorted array.  The first
+   * run starts at 0, and each of the others starts at the corresponding
+   * element of runBoundaries.  Runs are merged in pairs, so there are
+   * about log2(runs) passes over values.
+   *
+   * @throws IllegalArgumentException
+   *   If runBoundaries is not in non-decreasing order between 0 and
+   *   values.length.
+   */
+  public static <T> void mergeSortedRuns(T[] values, int[] runBoundaries,
+                                         Comparator<T> order)
+  {
+    // starts[i] is the start of run i, and starts[runs] is the end.
+    int runs = runBoundaries.length + 1;
+    int[] starts = new int[runs + 1];
+    starts[0] = 0;
+    for (int i = 0; i < runBoundaries.length; i++)
+      {
+        starts[i + 1] = runBoundaries[i];
+        if ((starts[i + 1] < starts[i]) || (starts[i + 1] > values.length))
+          throw new IllegalArgumentException("invalid run boundary "
+                                             + runBoundaries[i]);
+      } // for
+    starts[runs] = values.length;
+    while (runs > 1)
+      {
+        int merged = 0;
+        for (int i = 0; i < runs; i += 2)
+          {
+            if (i + 1 < runs)
+              mergeIfNeeded(values, order, starts[i], starts[i + 1],
+                            starts[i + 2]);
+            starts[merged++] = starts[i];
+          } // for
+        starts[merged] = values.length;
+        runs = merged;
+      } // while
+  } // mergeSortedRuns(T[], int[], Comparator<T>)
+
+  /**
+   * Sort values, given that the first sortedPrefixLen of them are
+   * already sorted.  Sorts only the rest, and then merges them into the
+   * prefix.  The merge only moves the prefix values that are larger than
+   * the smallest new value, so small appends stay cheap.
+   *
+   * @throws IllegalArgumentException
+   *   If sortedPrefixLen is not between 0 and values.length.
+   */
+  public static <T> void resortAfterAppend(T[] values, int sortedPrefixLen,
+                                           Comparator<T> order)
+  {
+    if ((sortedPrefixLen < 0) || (sortedPrefixLen > values.length))
+      throw new IllegalArgumentException("invalid prefix length "
+                                         + sortedPrefixLen);
+    qsort(values, order, sortedPrefixLen, values.length);
+    mergeIfNeeded(values, order, 0, sortedPrefixLen, values.length);
+  } // resortAfterAppend(T[], int, Comparator<T>)
+
+  /**
+   * Sort values in place using order to compare values, sorting the
+   * two sides of each partition in parallel on the common fork-join
+   * pool.
+   */
+  public static <T> void parallelQsort(T[] values, Comparator<T> order)
+  {
+    parallelQsort(values, order, 0, values.length);
+  } // parallelQsort(T[], Comparator<T>)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * in parallel on the common fork-join pool.
+   */
+  public static <T> void parallelQsort(T[] values, Comparator<T> order,
+                                       int lb, int ub)
+  {
+    parallelQsort(values, order, lb, ub, ForkJoinPool.commonPool());
+  } // parallelQsort(T[], Comparator<T>, int, int)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * in parallel on pool.
+   *
+   * @pre
+   *   order can safely be called from multiple threads at once.
+   */
+  public static <T> void parallelQsort(T[] values, Comparator<T> order,
+                                       int lb, int ub, ForkJoinPool pool)
+  {
+    if (ub - lb < PARALLEL_THRESHOLD)
+      qsort(values, order, lb, ub);
+    else
+      pool.invoke(new QsortTask<T>(values, order, lb, ub));
+  } // parallelQsort(T[], Comparator<T>, int, int, ForkJoinPool)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Partition the subarray of values from lb (inclusive) to ub
+   * (exclusive) using the Dutch National Flag algorithm.  Returns the
+   * range of values equal to the pivot.
+   *
+   * @pre
+   *   lb < ub
+   * @post
+   *   For all i, lb <= i < result.lb, values[i] < pivot
+   * @post
+   *   For all i, result.lb <= i < result.ub, values[i] == pivot
+   * @post
+   *   For all i, result.ub <= i < ub, values[i] > pivot
+   */
+  static <T> Range partition(T[] values, Comparator<T> order, int lb, int ub)
+  {
+    return partition(values, order, lb, ub, values[lb + (ub - lb) / 2]);
+  } // partition(T[], Comparator<T>, int, int)
+
+  /**
+   * Partition the subarray of values from lb (inclusive) to ub
+   * (exclusive) around pivot using the Dutch National Flag algorithm.
+   * Returns the range of values equal to the pivot, which is empty if
+   * pivot does not appear in the subarray.
+   */
+  static <T> Range partition(T[] values, Comparator<T> order, int lb, int ub,
+                             T pivot)
+  {
+    // [lb, r) is red (small), [r, w) is white (equal), [w, b) is
+    // unprocessed, and [b, ub) is blue (large).
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        int c = order.compare(values[w], pivot);
+        if (c < 0)
+          swap(values, r++, w++);
+        else if (c == 0)
+          w++;
+        else
+          swap(values, w, --b);
+      } // while
+    return new Range(r, b);
+  } // partition(T[], Comparator<T>, int, int, T)
+
+  /**
+   * Partition the subarray of values from lb (inclusive) to ub
+   * (exclusive) using the Dutch National Flag algorithm, counting the
+   * comparisons and swaps in stats.  Returns the range of values equal
+   * to the pivot.
+   */
+  static <T> Range partition(T[] values, Comparator<T> order, int lb, int ub,
+                             SortStats stats)
+  {
+    T pivot = values[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    long swaps = 0;
+    while (w < b)
+      {
+        int c = order.compare(values[w], pivot);
+        if (c < 0)
+          {
+            swap(values, r++, w++);
+            swaps++;
+          } // if values[w] < pivot
+        else if (c == 0)
+          w++;
+        else
+          {
+            swap(values, w, --b);
+            swaps++;
+          } // if values[w] > pivot
+      } // while
+    stats.partitions++;
+    stats.comparisons += (ub - lb);
+    stats.swaps += swaps;
+    return new Range(r, b);
+  } // partition(T[], Comparator<T>, int, int, SortStats)
+
+  /**
+   * Partition the subarray of values from lb (inclusive) to ub
+   * (exclusive) by their natural order, using the Dutch National Flag
+   * algorithm.  Returns the range of values equal to the pivot.
+   */
+  static <T extends Comparable<? super T>> Range partition(T[] values, int lb,
+                                                           int ub)
+  {
+    T pivot = values[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        int c = values[w].compareTo(pivot);
+        if (c < 0)
+          swap(values, r++, w++);
+        else if (c == 0)
+          w++;
+        else
+          swap(values, w, --b);
+      } // while
+    return new Range(r, b);
+  } // partition(T[], int, int)
+
+  /**
+   * Partition the subarray of strings from lb (inclusive) to ub
+   * (exclusive) using the Dutch National Flag algorithm.  Returns the
+   * range of strings equal to the pivot.
+   */
+  static Range partition(String[] values, int lb, int ub)
+  {
+    String pivot = values[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        int c = values[w].compareTo(pivot);
+        if (c < 0)
+          swap(values, r++, w++);
+        else if (c == 0)
+          w++;
+        else
+          swap(values, w, --b);
+      } // while
+    return new Range(r, b);
+  } // partition(String[], int, int)
+
+  /**
+   * Partition the subarray of Integers from lb (inclusive) to ub
+   * (exclusive) using the Dutch National Flag algorithm.  Returns the
+   * range of values equal to the pivot.
+   */
+  static Range partition(Integer[] values, int lb, int ub)
+  {
+    int pivot = values[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        int val = values[w];
+        if (val < pivot)
+          swap(values, r++, w++);
+        else if (val == pivot)
+          w++;
+        else
+          swap(values, w, --b);
+      } // while
+    return new Range(r, b);
+  } // partition(Integer[], int, int)
+
+  /**
+   * Partition the subarray of Longs from lb (inclusive) to ub
+   * (exclusive) using the Dutch National Flag algorithm.  Returns the
+   * range of values equal to the pivot.
    */
-  public static <T> void qsort(T[] values, Comparator<T> order)
+  static Range partition(Long[] values, int lb, int ub)
   {
-    qsort(values, order, 0, values.length);
-  } // qsort(T[], Comparator<T>)
+    long pivot = values[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        long val = values[w];
+        if (val < pivot)
+          swap(values, r++, w++);
+        else if (val == pivot)
+          w++;
+        else
+          swap(values, w, --b);
+      } // while
+    return new Range(r, b);
+  } // partition(Long[], int, int)
 
   /**
-   * Sort the subarray of values from lb (inclusive) to ub (exclusive) using
-   * order to compare values.
+   * Partition the subarray of ints from lb (inclusive) to ub
+   * (exclusive) using the Dutch National Flag algorithm.  Returns the
+   * range of values equal to the pivot.
    */
-  public static <T> void qsort(T[] values, Comparator<T> order, int lb, int ub)
+  static Range partition(int[] values, int lb, int ub)
   {
-    // STUB
-  } // qsort(T[], Comparator<T>, int, int)
+    return partition(values, lb, ub, values[lb + (ub - lb) / 2]);
+  } // partition(int[], int, int)
+
+  /**
+   * Partition the subarray of ints from lb (inclusive) to ub
+   * (exclusive) around pivot using the Dutch National Flag algorithm.
+   * Returns the range of values equal to the pivot, which is empty if
+   * pivot does not appear in the subarray.
+   */
+  static Range partition(int[] values, int lb, int ub, int pivot)
+  {
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        int val = values[w];
+        if (val < pivot)
+          swap(values, r++, w++);
+        else if (val == pivot)
+          w++;
+        else
+          swap(values, w, --b);
+      } // while
+    return new Range(r, b);
+  } // partition(int[], int, int, int)
+
+  /**
+   * Partition the subarray of longs from lb (inclusive) to ub
+   * (exclusive) using the Dutch National Flag algorithm.  Returns the
+   * range of values equal to the pivot.
+   */
+  static Range partition(long[] values, int lb, int ub)
+  {
+    long pivot = values[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        long val = values[w];
+        if (val < pivot)
+          swap(values, r++, w++);
+        else if (val == pivot)
+          w++;
+        else
+          swap(values, w, --b);
+      } // while
+    return new Range(r, b);
+  } // partition(long[], int, int)
+
+  /**
+   * Partition the subarray of doubles from lb (inclusive) to ub
+   * (exclusive) using the Dutch National Flag algorithm.  Returns the
+   * range of values equal to the pivot.
+   */
+  static Range partition(double[] values, int lb, int ub)
+  {
+    double pivot = values[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        int c = Double.compare(values[w], pivot);
+        if (c < 0)
+          swap(values, r++, w++);
+        else if (c == 0)
+          w++;
+        else
+          swap(values, w, --b);
+      } // while
+    return new Range(r, b);
+  } // partition(double[], int, int)
+
+  /**
+   * Partition the subarray of keys from lb (inclusive) to ub (exclusive)
+   * using the Dutch National Flag algorithm, making the same swaps in
+   * values.  Returns the range of keys equal to the pivot.
+   */
+  static <K> Range partition(K[] keys, Comparator<K> order, Object[] values,
+                             int lb, int ub)
+  {
+    K pivot = keys[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        int c = order.compare(keys[w], pivot);
+        if (c < 0)
+          {
+            swap(values, r, w);
+            swap(keys, r++, w++);
+          } // if keys[w] < pivot
+        else if (c == 0)
+          w++;
+        else
+          {
+            swap(values, w, --b);
+            swap(keys, w, b);
+          } // if keys[w] > pivot
+      } // while
+    return new Range(r, b);
+  } // partition(K[], Comparator<K>, Object[], int, int)
+
+  /**
+   * Partition the subarray of keys from lb (inclusive) to ub (exclusive)
+   * using the Dutch National Flag algorithm, making the same swaps in
+   * values.  Returns the range of keys equal to the pivot.
+   */
+  static Range partition(long[] keys, Object[] values, int lb, int ub)
+  {
+    long pivot = keys[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        long key = keys[w];
+        if (key < pivot)
+          {
+            swap(values, r, w);
+            swap(keys, r++, w++);
+          } // if key < pivot
+        else if (key == pivot)
+          w++;
+        else
+          {
+            swap(values, w, --b);
+            swap(keys, w, b);
+          } // if key > pivot
+      } // while
+    return new Range(r, b);
+  } // partition(long[], Object[], int, int)
+
+  /**
+   * Partition the subarray of keys from lb (inclusive) to ub (exclusive)
+   * using the Dutch National Flag algorithm, making the same swaps in
+   * payload.  Returns the range of keys equal to the pivot.
+   */
+  static Range partition(int[] keys, int[] payload, int lb, int ub)
+  {
+    int pivot = keys[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        int key = keys[w];
+        if (key < pivot)
+          {
+            swap(payload, r, w);
+            swap(keys, r++, w++);
+          } // if key < pivot
+        else if (key == pivot)
+          w++;
+        else
+          {
+            swap(payload, w, --b);
+            swap(keys, w, b);
+          } // if key > pivot
+      } // while
+    return new Range(r, b);
+  } // partition(int[], int[], int, int)
+
+  /**
+   * Partition the subarray of keys from lb (inclusive) to ub (exclusive)
+   * using the Dutch National Flag algorithm, making the same swaps in
+   * values.  Returns the range of keys equal to the pivot.
+   */
+  static Range partition(double[] keys, Object[] values, int lb, int ub)
+  {
+    double pivot = keys[lb + (ub - lb) / 2];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        int c = Double.compare(keys[w], pivot);
+        if (c < 0)
+          {
+            swap(values, r, w);
+            swap(keys, r++, w++);
+          } // if keys[w] < pivot
+        else if (c == 0)
+          w++;
+        else
+          {
+            swap(values, w, --b);
+            swap(keys, w, b);
+          } // if keys[w] > pivot
+      } // while
+    return new Range(r, b);
+  } // partition(double[], Object[], int, int)
+
+  /**
+   * Partition the subarray of indices from lb (inclusive) to ub
+   * (exclusive) by the values they refer to, using the Dutch National
+   * Flag algorithm.  Returns the range of indices whose values equal
+   * the pivot.
+   */
+  static <T> Range partition(T[] values, Comparator<T> order, int[] indices,
+                             int lb, int ub)
+  {
+    T pivot = values[indices[lb + (ub - lb) / 2]];
+    int r = lb;
+    int w = lb;
+    int b = ub;
+    while (w < b)
+      {
+        int c = order.compare(values[indices[w]], pivot);
+        if (c < 0)
+          swap(indices, r++, w++);
+        else if (c == 0)
+          w++;
+        else
+          swap(indices, w, --b);
+      } // while
+    return new Range(r, b);
+  } // partition(T[], Comparator<T>, int[], int, int)
+
+  /**
+   * Partition the subarray of values from lb (inclusive) to ub
+   * (exclusive) around the pivot picked by choosePivot, comparing
+   * elements with the pivot a block at a time.  Returns the range of
+   * values equal to the pivot, which holds just
+   * the pivot unless the pivot turns out to be the smallest value, in
+   * which case we fall back to DNF so that duplicates are handled well.
+   *
+   * @pre
+   *   ub - lb >= 3
+   * @pre
+   *   left.length == right.length == BLOCK_SIZE
+   */
+  static <T> Range blockPartition(T[] values, Comparator<T> order, int lb,
+                                  int ub, int[] left, int[] right)
+  {
+    swap(values, lb, choosePivot(values, order, lb, ub));
+    T pivot = values[lb];
+    // [lb+1, l) is small, [l, r] is unprocessed, and (r, ub) is large.
+    int l = lb + 1;
+    int r = ub - 1;
+    int numLeft = 0;
+    int numRight = 0;
+    int startLeft = 0;
+    int startRight = 0;
+    while (r - l + 1 > 2 * BLOCK_SIZE)
+      {
+        // Record the offsets of large elements in the left block and
+        // small elements in the right block.
+        if (numLeft == 0)
+          {
+            startLeft = 0;
+            for (int i = 0; i < BLOCK_SIZE; i++)
+              {
+                left[numLeft] = i;
+                numLeft += (order.compare(values[l + i], pivot) >= 0) ? 1 : 0;
+              } // for
+          } // if the left block is used up
+        if (numRight == 0)
+          {
+            startRight = 0;
+            for (int i = 0; i < BLOCK_SIZE; i++)
+              {
+                right[numRight] = i;
+                numRight += (order.compare(values[r - i], pivot) < 0) ? 1 : 0;
+              } // for
+          } // if the right block is used up
+        // Swap as many pairs as we can.
+        int num = Math.min(numLeft, numRight);
+        for (int i = 0; i < num; i++)
+          swap(values, l + left[startLeft + i], r - right[startRight + i]);
+        numLeft -= num;
+        numRight -= num;
+        startLeft += num;
+        startRight += num;
+        if (numLeft == 0)
+          l += BLOCK_SIZE;
+        if (numRight == 0)
+          r -= BLOCK_SIZE;
+      } // while
+    // Finish whatever is left one element at a time.
+    while (l <= r)
+      {
+        if (order.compare(values[l], pivot) < 0)
+          l++;
+        else
+          swap(values, l, r--);
+      } // while
+    // Nothing was smaller than the pivot, so its copies are mixed in
+    // with the larger values.  Gather them with DNF.
+    if (l - 1 == lb)
+      return partition(values, order, lb, ub, pivot);
+    swap(values, lb, l - 1);
+    return new Range(l - 1, l);
+  } // blockPartition(T[], Comparator<T>, int, int, int[], int[])
+
+  /**
+   * Partition the subarray of ints from lb (inclusive) to ub
+   * (exclusive) around the pivot picked by choosePivot, comparing
+   * elements with the pivot a block at a time.  Returns the range of
+   * values equal to the pivot.
+   */
+  static Range blockPartition(int[] values, int lb, int ub, int[] left,
+                              int[] right)
+  {
+    swap(values, lb, choosePivot(values, lb, ub));
+    int pivot = values[lb];
+    int l = lb + 1;
+    int r = ub - 1;
+    int numLeft = 0;
+    int numRight = 0;
+    int startLeft = 0;
+    int startRight = 0;
+    while (r - l + 1 > 2 * BLOCK_SIZE)
+      {
+        if (numLeft == 0)
+          {
+            startLeft = 0;
+            for (int i = 0; i < BLOCK_SIZE; i++)
+              {
+                left[numLeft] = i;
+                numLeft += (values[l + i] >= pivot) ? 1 : 0;
+              } // for
+          } // if the left block is used up
+        if (numRight == 0)
+          {
+            startRight = 0;
+            for (int i = 0; i < BLOCK_SIZE; i++)
+              {
+                right[numRight] = i;
+                numRight += (values[r - i] < pivot) ? 1 : 0;
+              } // for
+          } // if the right block is used up
+        int num = Math.min(numLeft, numRight);
+        for (int i = 0; i < num; i++)
+          swap(values, l + left[startLeft + i], r - right[startRight + i]);
+        numLeft -= num;
+        numRight -= num;
+        startLeft += num;
+        startRight += num;
+        if (numLeft == 0)
+          l += BLOCK_SIZE;
+        if (numRight == 0)
+          r -= BLOCK_SIZE;
+      } // while
+    while (l <= r)
+      {
+        if (values[l] < pivot)
+          l++;
+        else
+          swap(values, l, r--);
+      } // while
+    if (l - 1 == lb)
+      return partition(values, lb, ub, pivot);
+    swap(values, lb, l - 1);
+    return new Range(l - 1, l);
+  } // blockPartition(int[], int, int, int[], int[])
+
+  /**
+   * Find the index of the median of values[i], values[j], and values[k].
+   */
+  static <T> int medianOfThree(T[] values, Comparator<T> order, int i, int j,
+                               int k)
+  {
+    if (order.compare(values[i], values[j]) < 0)
+      {
+        if (order.compare(values[j], values[k]) < 0)
+          return j;
+        else if (order.compare(values[i], values[k]) < 0)
+          return k;
+        else
+          return i;
+      } // if values[i] < values[j]
+    else
+      {
+        if (order.compare(values[i], values[k]) < 0)
+          return i;
+        else if (order.compare(values[j], values[k]) < 0)
+          return k;
+        else
+          return j;
+      } // if values[i] >= values[j]
+  } // medianOfThree(T[], Comparator<T>, int, int, int)
+
+  /**
+   * Find the index of the median of values[i], values[j], and values[k].
+   */
+  static int medianOfThree(int[] values, int i, int j, int k)
+  {
+    if (values[i] < values[j])
+      {
+        if (values[j] < values[k])
+          return j;
+        else if (values[i] < values[k])
+          return k;
+        else
+          return i;
+      } // if values[i] < values[j]
+    else
+      {
+        if (values[i] < values[k])
+          return i;
+        else if (values[j] < values[k])
+          return k;
+        else
+          return j;
+      } // if values[i] >= values[j]
+  } // medianOfThree(int[], int, int, int)
+
+  /**
+   * Find the index of a good pivot for the subarray of values from lb
+   * (inclusive) to ub (exclusive): the ninther for large subarrays
+   * and the median of the first, middle, and last elements otherwise.
+   */
+  static <T> int choosePivot(T[] values, Comparator<T> order, int lb, int ub)
+  {
+    int n = ub - lb;
+    int mid = lb + n / 2;
+    int hi = ub - 1;
+    if (n < NINTHER_THRESHOLD)
+      return medianOfThree(values, order, lb, mid, hi);
+    int step = n / 8;
+    return medianOfThree(values, order,
+        medianOfThree(values, order, lb, lb + step, lb + 2*step),
+        medianOfThree(values, order, mid - step, mid, mid + step),
+        medianOfThree(values, order, hi - 2*step, hi - step, hi));
+  } // choosePivot(T[], Comparator<T>, int, int)
+
+  /**
+   * Find the index of a good pivot for the subarray of values from lb
+   * (inclusive) to ub (exclusive): the ninther for large subarrays
+   * and the median of the first, middle, and last elements otherwise.
+   */
+  static int choosePivot(int[] values, int lb, int ub)
+  {
+    int n = ub - lb;
+    int mid = lb + n / 2;
+    int hi = ub - 1;
+    if (n < NINTHER_THRESHOLD)
+      return medianOfThree(values, lb, mid, hi);
+    int step = n / 8;
+    return medianOfThree(values,
+        medianOfThree(values, lb, lb + step, lb + 2*step),
+        medianOfThree(values, mid - step, mid, mid + step),
+        medianOfThree(values, hi - 2*step, hi - step, hi));
+  } // choosePivot(int[], int, int)
+
+  /**
+   * Determine whether a partition of the subarray from lb (inclusive)
+   * to ub (exclusive) that leaves mid in the middle is badly
+   * unbalanced, with more than 7/8 of the subarray on one side.
+   */
+  static boolean isUnbalanced(int lb, int ub, Range mid)
+  {
+    long limit = (ub - lb) * 7L / 8;
+    return (mid.lb - lb > limit) || (ub - mid.ub > limit);
+  } // isUnbalanced(int, int, Range)
+
+  /**
+   * Swap a few elements near the ends of the subarray of values from
+   * lb (inclusive) to ub (exclusive) with elements a quarter of the
+   * way in, to break up patterns that made the last partition
+   * unbalanced.
+   */
+  static <T> void breakPatterns(T[] values, int lb, int ub)
+  {
+    int n = ub - lb;
+    if (n < INSERTION_THRESHOLD)
+      return;
+    int quarter = n / 4;
+    swap(values, lb, lb + quarter);
+    swap(values, ub - 1, ub - 1 - quarter);
+    if (n >= NINTHER_THRESHOLD)
+      {
+        swap(values, lb + 1, lb + quarter + 1);
+        swap(values, lb + 2, lb + quarter + 2);
+        swap(values, ub - 2, ub - 2 - quarter);
+        swap(values, ub - 3, ub - 3 - quarter);
+      } // if the ninther will look further in
+  } // breakPatterns(T[], int, int)
+
+  /**
+   * Swap a few elements near the ends of the subarray of values from
+   * lb (inclusive) to ub (exclusive) with elements a quarter of the
+   * way in, to break up patterns that made the last partition
+   * unbalanced.
+   */
+  static void breakPatterns(int[] values, int lb, int ub)
+  {
+    int n = ub - lb;
+    if (n < INSERTION_THRESHOLD)
+      return;
+    int quarter = n / 4;
+    swap(values, lb, lb + quarter);
+    swap(values, ub - 1, ub - 1 - quarter);
+    if (n >= NINTHER_THRESHOLD)
+      {
+        swap(values, lb + 1, lb + quarter + 1);
+        swap(values, lb + 2, lb + quarter + 2);
+        swap(values, ub - 2, ub - 2 - quarter);
+        swap(values, ub - 3, ub - 3 - quarter);
+      } // if the ninther will look further in
+  } // breakPatterns(int[], int, int)
+
+  /**
+   * Partition the subarray of values from lb (inclusive) to ub
+   * (exclusive) around the pivot picked by choosePivot without
+   * changing the order of the values within each part.  Smaller values
+   * are packed down in place; equal values are copied to the front of
+   * scratch and larger ones to the back (in reverse), and then both
+   * are copied back.
+   */
+  static <T> Range stablePartition(T[] values, Comparator<T> order, int lb,
+                                   int ub, Object[] scratch)
+  {
+    T pivot = values[choosePivot(values, order, lb, ub)];
+    int small = lb;
+    int equal = 0;
+    int large = ub - lb;
+    for (int i = lb; i < ub; i++)
+      {
+        T val = values[i];
+        int c = order.compare(val, pivot);
+        if (c < 0)
+          values[small++] = val;
+        else if (c == 0)
+          scratch[equal++] = val;
+        else
+          scratch[--large] = val;
+      } // for
+    System.arraycopy(scratch, 0, values, small, equal);
+    int pos = small + equal;
+    for (int j = ub - lb - 1; j >= large; j--)
+      {
+        @SuppressWarnings("unchecked")
+        T val = (T) scratch[j];
+        values[pos++] = val;
+      } // for
+    return new Range(small, small + equal);
+  } // stablePartition(T[], Comparator<T>, int, int, Object[])
+
+  /**
+   * Partition the subarray of values from lb (inclusive) to ub
+   * (exclusive) around two pivots, p < q, which are stored at values[lb]
+   * and values[ub-1].  Returns the range of values between the two
+   * pivots.  The pivots end up just outside that range, at result.lb-1
+   * and result.ub.
+   *
+   * @pre
+   *   lb + 1 < ub
+   * @pre
+   *   p == values[lb], q == values[ub-1], p < q
+   * @post
+   *   For all i, lb <= i < result.lb-1, values[i] < p
+   * @post
+   *   For all i, result.lb <= i < result.ub, p <= values[i] <= q
+   * @post
+   *   For all i, result.ub < i < ub, values[i] > q
+   */
+  static <T> Range partition(T[] values, Comparator<T> order, int lb, int ub,
+                             T p, T q)
+  {
+    // [lb+1, l) is small, [l, k) is middle, [k, g] is unprocessed,
+    // and (g, ub-1) is large.
+    int l = lb + 1;
+    int k = l;
+    int g = ub - 2;
+    while (k <= g)
+      {
+        if (order.compare(values[k], p) < 0)
+          swap(values, k, l++);
+        else if (order.compare(values[k], q) > 0)
+          {
+            while ((k < g) && (order.compare(values[g], q) > 0))
+              g--;
+            swap(values, k, g--);
+            if (order.compare(values[k], p) < 0)
+              swap(values, k, l++);
+          } // else if values[k] > q
+        k++;
+      } // while
+    // Move the pivots into place.
+    swap(values, lb, --l);
+    swap(values, ub - 1, ++g);
+    return new Range(l + 1, g);
+  } // partition(T[], Comparator<T>, int, int, T, T)
+
+  /**
+   * Partition the subarray of ints from lb (inclusive) to ub
+   * (exclusive) around two pivots, p < q, which are stored at values[lb]
+   * and values[ub-1].  Returns the range of values between the two
+   * pivots.  The pivots end up just outside that range.
+   */
+  static Range partition(int[] values, int lb, int ub, int p, int q)
+  {
+    int l = lb + 1;
+    int k = l;
+    int g = ub - 2;
+    while (k <= g)
+      {
+        int val = values[k];
+        if (val < p)
+          swap(values, k, l++);
+        else if (val > q)
+          {
+            while ((k < g) && (values[g] > q))
+              g--;
+            swap(values, k, g--);
+            if (values[k] < p)
+              swap(values, k, l++);
+          } // else if val > q
+        k++;
+      } // while
+    swap(values, lb, --l);
+    swap(values, ub - 1, ++g);
+    return new Range(l + 1, g);
+  } // partition(int[], int, int, int, int)
+
+  /**
+   * Move the values equal to p in the subarray of values from lb
+   * (inclusive) to ub (exclusive) to its front and the values equal
+   * to q to its back.  Returns the range of values strictly between
+   * the two.
+   *
+   * @pre
+   *   For all i, lb <= i < ub, p <= values[i] <= q
+   */
+  static <T> Range sweepPivots(T[] values, Comparator<T> order, int lb, int ub,
+                               T p, T q)
+  {
+    // [lb, l) equals p, [l, k) is between, [k, g) is unprocessed, and
+    // [g, ub) equals q.
+    int l = lb;
+    int k = lb;
+    int g = ub;
+    while (k < g)
+      {
+        if (order.compare(values[k], p) == 0)
+          swap(values, k++, l++);
+        else if (order.compare(values[k], q) == 0)
+          swap(values, k, --g);
+        else
+          k++;
+      } // while
+    return new Range(l, g);
+  } // sweepPivots(T[], Comparator<T>, int, int, T, T)
+
+  /**
+   * Move the values equal to p in the subarray of values from lb
+   * (inclusive) to ub (exclusive) to its front and the values equal
+   * to q to its back.  Returns the range of values strictly between
+   * the two.
+   */
+  static Range sweepPivots(int[] values, int lb, int ub, int p, int q)
+  {
+    int l = lb;
+    int k = lb;
+    int g = ub;
+    while (k < g)
+      {
+        if (values[k] == p)
+          swap(values, k++, l++);
+        else if (values[k] == q)
+          swap(values, k, --g);
+        else
+          k++;
+      } // while
+    return new Range(l, g);
+  } // sweepPivots(int[], int, int, int, int)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * allowing at most depth more levels of partitioning before falling
+   * back to heapsort.
+   */
+  static <T> void introsort(T[] values, Comparator<T> order, int lb, int ub,
+                            int depth)
+  {
+    if (ub - lb <= 1)
+      return;
+    if (depth <= 0)
+      {
+        heapsort(values, order, lb, ub);
+        return;
+      } // if we've recursed too far
+    Range mid = partition(values, order, lb, ub);
+    introsort(values, order, lb, mid.lb, depth - 1);
+    introsort(values, order, mid.ub, ub, depth - 1);
+  } // introsort(T[], Comparator<T>, int, int, int)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using heapsort.
+   */
+  static <T> void heapsort(T[] values, Comparator<T> order, int lb, int ub)
+  {
+    int n = ub - lb;
+    // Build a max-heap, rooted at lb.
+    for (int i = n / 2 - 1; i >= 0; i--)
+      siftDown(values, order, lb, i, n);
+    // Repeatedly move the largest remaining value to the end.
+    for (int size = n - 1; size > 0; size--)
+      {
+        swap(values, lb, lb + size);
+        siftDown(values, order, lb, 0, size);
+      } // for
+  } // heapsort(T[], Comparator<T>, int, int)
+
+  /**
+   * Restore the heap property for the heap of the given size stored
+   * at values[lb..lb+size), assuming that only the element at offset
+   * i may be out of place.
+   */
+  static <T> void siftDown(T[] values, Comparator<T> order, int lb, int i,
+                           int size)
+  {
+    T val = values[lb + i];
+    int child;
+    while ((child = 2 * i + 1) < size)
+      {
+        if ((child + 1 < size)
+            && (order.compare(values[lb + child], values[lb + child + 1]) < 0))
+          child++;
+        if (order.compare(val, values[lb + child]) >= 0)
+          break;
+        values[lb + i] = values[lb + child];
+        i = child;
+      } // while
+    values[lb + i] = val;
+  } // siftDown(T[], Comparator<T>, int, int, int)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using heapsort.
+   */
+  static void heapsort(int[] values, int lb, int ub)
+  {
+    int n = ub - lb;
+    for (int i = n / 2 - 1; i >= 0; i--)
+      siftDown(values, lb, i, n);
+    for (int size = n - 1; size > 0; size--)
+      {
+        swap(values, lb, lb + size);
+        siftDown(values, lb, 0, size);
+      } // for
+  } // heapsort(int[], int, int)
+
+  /**
+   * Restore the heap property for the heap of the given size stored
+   * at values[lb..lb+size), assuming that only the element at offset
+   * i may be out of place.
+   */
+  static void siftDown(int[] values, int lb, int i, int size)
+  {
+    int val = values[lb + i];
+    int child;
+    while ((child = 2 * i + 1) < size)
+      {
+        if ((child + 1 < size) && (values[lb + child] < values[lb + child + 1]))
+          child++;
+        if (val >= values[lb + child])
+          break;
+        values[lb + i] = values[lb + child];
+        i = child;
+      } // while
+    values[lb + i] = val;
+  } // siftDown(int[], int, int, int)
+
+  /**
+   * Sort the part of the subarray of values from lb (inclusive) to ub
+   * (exclusive) that falls before position k.  Subarrays that start at
+   * or after k are only partitioned as far as needed to find that
+   * boundary.
+   */
+  static <T> void partialSort(T[] values, Comparator<T> order, int lb, int ub,
+                              int k)
+  {
+    if ((ub - lb <= 1) || (lb >= k))
+      return;
+    Range mid = partition(values, order, lb, ub);
+    partialSort(values, order, lb, mid.lb, k);
+    partialSort(values, order, mid.ub, ub, k);
+  } // partialSort(T[], Comparator<T>, int, int, int)
+
+  /**
+   * Sort the subarray of keys from lb (inclusive) to ub (exclusive)
+   * using order, making the same rearrangements to values.
+   */
+  static <K> void qsortByKey(K[] keys, Comparator<K> order, Object[] values,
+                             int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(keys, order, values, lb, ub);
+    qsortByKey(keys, order, values, lb, mid.lb);
+    qsortByKey(keys, order, values, mid.ub, ub);
+  } // qsortByKey(K[], Comparator<K>, Object[], int, int)
+
+  /**
+   * Sort the subarray of keys from lb (inclusive) to ub (exclusive),
+   * making the same rearrangements to values.
+   */
+  static void qsort(double[] keys, Object[] values, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(keys, values, lb, ub);
+    qsort(keys, values, lb, mid.lb);
+    qsort(keys, values, mid.ub, ub);
+  } // qsort(double[], Object[], int, int)
+
+  /**
+   * Sort the subarray of indices from lb (inclusive) to ub (exclusive)
+   * by the values they refer to.
+   */
+  static <T> void argsort(T[] values, Comparator<T> order, int[] indices,
+                          int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return;
+    Range mid = partition(values, order, indices, lb, ub);
+    argsort(values, order, indices, lb, mid.lb);
+    argsort(values, order, indices, mid.ub, ub);
+  } // argsort(T[], Comparator<T>, int[], int, int)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * counting the work done in stats.  depth is the recursion depth of
+   * this call.
+   */
+  static <T> void qsort(T[] values, Comparator<T> order, int lb, int ub,
+                        SortStats stats, int depth)
+  {
+    if (ub - lb <= 1)
+      return;
+    stats.depth(depth);
+    Range mid = partition(values, order, lb, ub, stats);
+    qsort(values, order, lb, mid.lb, stats, depth + 1);
+    qsort(values, order, mid.ub, ub, stats, depth + 1);
+  } // qsort(T[], Comparator<T>, int, int, SortStats, int)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using block partitioning, with left and right as the offset
+   * buffers.  After each badly unbalanced partition we shuffle a few
+   * elements to break up the pattern that caused it, and once
+   * badAllowed of those have happened we give up and use heapsort, so
+   * the sort takes O(n log n) time whatever the input.  We recurse
+   * only into the smaller side, so the stack stays O(log n) deep.
+   */
+  static <T> void blockQsort(T[] values, Comparator<T> order, int lb, int ub,
+                             int[] left, int[] right, int badAllowed)
+  {
+    while (ub - lb > INSERTION_THRESHOLD)
+      {
+        Range mid = blockPartition(values, order, lb, ub, left, right);
+        if (isUnbalanced(lb, ub, mid))
+          {
+            if (--badAllowed < 0)
+              {
+                heapsort(values, order, lb, ub);
+                return;
+              } // if we've seen too many bad partitions
+            breakPatterns(values, lb, mid.lb);
+            breakPatterns(values, mid.ub, ub);
+          } // if the partition is unbalanced
+        if (mid.lb - lb < ub - mid.ub)
+          {
+            blockQsort(values, order, lb, mid.lb, left, right, badAllowed);
+            lb = mid.ub;
+          } // if the left side is smaller
+        else
+          {
+            blockQsort(values, order, mid.ub, ub, left, right, badAllowed);
+            ub = mid.lb;
+          } // if the right side is smaller
+      } // while
+    insertionSort(values, order, lb, ub);
+  } // blockQsort(T[], Comparator<T>, int, int, int[], int[], int)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using order to compare values, taking advantage of any existing
+   * order.  Like blockQsort, we break up patterns after badly
+   * unbalanced partitions, fall back to heapsort after badAllowed of
+   * them, and recurse only into the smaller side.
+   */
+  static <T> void adaptiveQsort(T[] values, Comparator<T> order, int lb,
+                                int ub, int badAllowed)
+  {
+    while (ub - lb > INSERTION_THRESHOLD)
+      {
+        // Find the run at the front, reversing it if it's descending.
+        int run = lb + 2;
+        if (order.compare(values[lb + 1], values[lb]) < 0)
+          {
+            while ((run < ub)
+                   && (order.compare(values[run], values[run - 1]) < 0))
+              run++;
+            reverse(values, lb, run);
+          } // if the run is descending
+        else
+          {
+            while ((run < ub)
+                   && (order.compare(values[run], values[run - 1]) >= 0))
+              run++;
+          } // if the run is ascending
+        if (run == ub)
+          return;
+        // A long sorted prefix followed by a shorter suffix, which may
+        // well have some order of its own.
+        if ((ub - run) * APPEND_RATIO <= ub - lb)
+          {
+            adaptiveQsort(values, order, run, ub, badAllowed);
+            merge(values, order, lb, run, ub);
+            return;
+          } // if the suffix is short
+        // Nearly sorted.
+        if (partialInsertionSort(values, order, lb, run, ub))
+          return;
+        Range mid = partition(values, order, lb, ub,
+                              values[choosePivot(values, order, lb, ub)]);
+        if (isUnbalanced(lb, ub, mid))
+          {
+            if (--badAllowed < 0)
+              {
+                heapsort(values, order, lb, ub);
+                return;
+              } // if we've seen too many bad partitions
+            breakPatterns(values, lb, mid.lb);
+            breakPatterns(values, mid.ub, ub);
+          } // if the partition is unbalanced
+        if (mid.lb - lb < ub - mid.ub)
+          {
+            adaptiveQsort(values, order, lb, mid.lb, badAllowed);
+            lb = mid.ub;
+          } // if the left side is smaller
+        else
+          {
+            adaptiveQsort(values, order, mid.ub, ub, badAllowed);
+            ub = mid.lb;
+          } // if the right side is smaller
+      } // while
+    insertionSort(values, order, lb, ub);
+  } // adaptiveQsort(T[], Comparator<T>, int, int, int)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using block partitioning, with left and right as the offset
+   * buffers, falling back to heapsort after badAllowed badly
+   * unbalanced partitions.
+   */
+  static void blockQsort(int[] values, int lb, int ub, int[] left,
+                         int[] right, int badAllowed)
+  {
+    while (ub - lb > INSERTION_THRESHOLD)
+      {
+        Range mid = blockPartition(values, lb, ub, left, right);
+        if (isUnbalanced(lb, ub, mid))
+          {
+            if (--badAllowed < 0)
+              {
+                heapsort(values, lb, ub);
+                return;
+              } // if we've seen too many bad partitions
+            breakPatterns(values, lb, mid.lb);
+            breakPatterns(values, mid.ub, ub);
+          } // if the partition is unbalanced
+        if (mid.lb - lb < ub - mid.ub)
+          {
+            blockQsort(values, lb, mid.lb, left, right, badAllowed);
+            lb = mid.ub;
+          } // if the left side is smaller
+        else
+          {
+            blockQsort(values, mid.ub, ub, left, right, badAllowed);
+            ub = mid.lb;
+          } // if the right side is smaller
+      } // while
+    insertionSort(values, lb, ub);
+  } // blockQsort(int[], int, int, int[], int[], int)
+
+  /**
+   * Sort the subarray of ints from lb (inclusive) to ub (exclusive)
+   * using insertion sort.
+   */
+  static void insertionSort(int[] values, int lb, int ub)
+  {
+    for (int i = lb + 1; i < ub; i++)
+      {
+        int val = values[i];
+        int j = i;
+        while ((j > lb) && (val < values[j - 1]))
+          {
+            values[j] = values[j - 1];
+            j--;
+          } // while
+        values[j] = val;
+      } // for
+  } // insertionSort(int[], int, int)
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using kernel to partition, with scratch as its scratch space.
+   * Like blockQsort, we break up patterns after badly unbalanced
+   * partitions, fall back to heapsort after badAllowed of them, and
+   * recurse only into the smaller side.
+   */
+  static void vectorQsort(int[] values, int lb, int ub, IntPartitioner kernel,
+                          int[] scratch, int badAllowed)
+  {
+    while (ub - lb > INSERTION_THRESHOLD)
+      {
+        int pivot = values[choosePivot(values, lb, ub)];
+        int split = kernel.partition(values, lb, ub, pivot, scratch);
+        // The pivot is the smallest value if nothing was smaller, so
+        // use DNF to pull out all of the copies of it.
+        Range mid = (split == lb) ? partition(values, lb, ub, pivot)
+                                  : new Range(split, split);
+        if (isUnbalanced(lb, ub, mid))
+          {
+            if (--badAllowed < 0)
+              {
+                heapsort(values, lb, ub);
+                return;
+              } // if we've seen too many bad partitions
+            breakPatterns(values, lb, mid.lb);
+            breakPatterns(values, mid.ub, ub);
+          } // if the partition is unbalanced
+        if (mid.lb - lb < ub - mid.ub)
+          {
+            vectorQsort(values, lb, mid.lb, kernel, scratch, badAllowed);
+            lb = mid.ub;
+          } // if the left side is smaller
+        else
+          {
+            vectorQsort(values, mid.ub, ub, kernel, scratch, badAllowed);
+            ub = mid.lb;
+          } // if the right side is smaller
+      } // while
+    insertionSort(values, lb, ub);
+  } // vectorQsort(int[], int, int, IntPartitioner, int[], int)
+
+  /**
+   * Load the vectorized partition kernel, if we can.
+   */
+  static IntPartitioner loadVectorPartitioner()
+  {
+    try
+      {
+        return (IntPartitioner) Class.forName("IntVectorPartitioner")
+                                     .getDeclaredConstructor().newInstance();
+      } // try
+    catch (Throwable e)
+      {
+        // Either the class wasn't built or jdk.incubator.vector is
+        // missing.  Either way, we'll use scalar code.
+        return null;
+      } // catch (Throwable)
+  } // loadVectorPartitioner()
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive),
+   * moving one copy of each distinct value to the front of the subarray.
+   * Returns the number of distinct values.
+   */
+  static <T> int sortDistinct(T[] values, Comparator<T> order, int lb, int ub)
+  {
+    if (ub - lb <= 1)
+      return ub - lb;
+    Range mid = partition(values, order, lb, ub);
+    int left = sortDistinct(values, order, lb, mid.lb);
+    // Keep one copy of the pivot, right after the smaller values.
+    int pos = lb + left;
+    swap(values, pos++, mid.lb);
+    // Slide the distinct larger values down next to it.
+    int right = sortDistinct(values, order, mid.ub, ub);
+    for (int i = 0; i < right; i++)
+      swap(values, pos + i, mid.ub + i);
+    return left + 1 + right;
+  } // sortDistinct(T[], Comparator<T>, int, int)
+
+  /**
+   * Sort the subarray of strings from lb (inclusive) to ub (exclusive),
+   * all of which share their first depth characters.
+   */
+  static void multikeyQsort(String[] values, int lb, int ub, int depth)
+  {
+    while (ub - lb > INSERTION_THRESHOLD)
+      {
+        int pivot = charAt(values[lb + (ub - lb) / 2], depth);
+        int r = lb;
+        int w = lb;
+        int b = ub;
+        while (w < b)
+          {
+            int c = charAt(values[w], depth);
+            if (c < pivot)
+              swap(values, r++, w++);
+            else if (c == pivot)
+              w++;
+            else
+              swap(values, w, --b);
+          } // while
+        multikeyQsort(values, lb, r, depth);
+        multikeyQsort(values, b, ub, depth);
+        // The strings in the middle all end here, so they're equal.
+        if (pivot < 0)
+          return;
+        lb = r;
+        ub = b;
+        depth++;
+      } // while
+    // Insertion sort, skipping the shared prefix.
+    for (int i = lb + 1; i < ub; i++)
+      {
+        String val = values[i];
+        int j = i;
+        while ((j > lb) && (compareFrom(val, values[j - 1], depth) < 0))
+          {
+            values[j] = values[j - 1];
+            j--;
+          } // while
+        values[j] = val;
+      } // for
+  } // multikeyQsort(String[], int, int, int)
+
+  /**
+   * Get the character of str at position i, or -1 if str is too short.
+   */
+  static int charAt(String str, int i)
+  {
+    return (i < str.length()) ? str.charAt(i) : -1;
+  } // charAt(String, int)
+
+  /**
+   * Compare left and right as String.compareTo does, given that their
+   * first depth characters are the same.
+   */
+  static int compareFrom(String left, String right, int depth)
+  {
+    int n = Math.min(left.length(), right.length());
+    for (int i = depth; i < n; i++)
+      {
+        int c = left.charAt(i) - right.charAt(i);
+        if (c != 0)
+          return c;
+      } // for
+    return left.length() - right.length();
+  } // compareFrom(String, String, int)
+
+  /**
+   * Stably sort the subarray of values from lb (inclusive) to ub
+   * (exclusive), using scratch, which holds at least ub-lb values.
+   * Recurses on the smaller side of each partition and loops on the
+   * larger.  Shuffling would lose stability, so rather than breaking
+   * up patterns after badly unbalanced partitions, we switch to merge
+   * sort once badAllowed of them have happened.
+   */
+  static <T> void stableQsort(T[] values, Comparator<T> order, int lb, int ub,
+                              Object[] scratch, int badAllowed)
+  {
+    while (ub - lb > INSERTION_THRESHOLD)
+      {
+        Range mid = stablePartition(values, order, lb, ub, scratch);
+        if (isUnbalanced(lb, ub, mid) && (--badAllowed < 0))
+          {
+            mergeSort(values, order, lb, ub, scratch);
+            return;
+          } // if we've seen too many bad partitions
+        if (mid.lb - lb < ub - mid.ub)
+          {
+            stableQsort(values, order, lb, mid.lb, scratch, badAllowed);
+            lb = mid.ub;
+          } // if the small side is smaller
+        else
+          {
+            stableQsort(values, order, mid.ub, ub, scratch, badAllowed);
+            ub = mid.lb;
+          } // if the large side is smaller
+      } // while
+    // Insertion sort only moves a value past larger ones, so it's stable.
+    insertionSort(values, order, lb, ub);
+  } // stableQsort(T[], Comparator<T>, int, int, Object[], int)
+
+  /**
+   * Stably sort the subarray of values from lb (inclusive) to ub
+   * (exclusive) with merge sort, using scratch, which holds at least
+   * (ub-lb)/2 values, for the merges.
+   */
+  static <T> void mergeSort(T[] values, Comparator<T> order, int lb, int ub,
+                            Object[] scratch)
+  {
+    if (ub - lb <= INSERTION_THRESHOLD)
+      {
+        insertionSort(values, order, lb, ub);
+        return;
+      } // if the subarray is small
+    int mid = lb + (ub - lb) / 2;
+    mergeSort(values, order, lb, mid, scratch);
+    mergeSort(values, order, mid, ub, scratch);
+    if (order.compare(values[mid - 1], values[mid]) <= 0)
+      return;
+    // Copy out the second half and fill values from the back, as in
+    // merge, taking from the first half only when it's strictly larger.
+    int len = ub - mid;
+    System.arraycopy(values, mid, scratch, 0, len);
+    int i = mid - 1;
+    int j = len - 1;
+    int k = ub - 1;
+    while (j >= 0)
+      {
+        @SuppressWarnings("unchecked")
+        T tail = (T) scratch[j];
+        if ((i >= lb) && (order.compare(values[i], tail) > 0))
+          values[k--] = values[i--];
+        else
+          {
+            values[k--] = tail;
+            j--;
+          } // if the tail's value goes next
+      } // while
+  } // mergeSort(T[], Comparator<T>, int, int, Object[])
+
+  /**
+   * Sort the subarray of values from lb (inclusive) to ub (exclusive)
+   * using insertion sort.
+   */
+  static <T> void insertionSort(T[] values, Comparator<T> order, int lb,
+                                int ub)
+  {
+    for (int i = lb + 1; i < ub; i++)
+      {
+        T val = values[i];
+        int j = i;
+        while ((j > lb) && (order.compare(val, values[j - 1]) < 0))
+          {
+            values[j] = values[j - 1];
+            j--;
+          } // while
+        values[j] = val;
+      } // for
+  } // insertionSort(T[], Comparator<T>, int, int)
+
+  /**
+   * Try to sort the subarray of values from lb (inclusive) to ub
+   * (exclusive) with insertion sort, given that values[lb..sorted) is
+   * already sorted.  Gives up, leaving values permuted but not
+   * necessarily sorted, once more than PARTIAL_INSERTION_LIMIT shifts
+   * have been made.  Returns true if the subarray is now sorted.
+   */
+  static <T> boolean partialInsertionSort(T[] values, Comparator<T> order,
+                                          int lb, int sorted, int ub)
+  {
+    int shifts = 0;
+    for (int i = sorted; i < ub; i++)
+      {
+        T val = values[i];
+        int j = i;
+        while ((j > lb) && (order.compare(val, values[j - 1]) < 0))
+          {
+            if (++shifts > PARTIAL_INSERTION_LIMIT)
+              {
+                values[j] = val;
+                return false;
+              } // if we've shifted too much
+            values[j] = values[j - 1];
+            j--;
+          } // while
+        values[j] = val;
+      } // for
+    return true;
+  } // partialInsertionSort(T[], Comparator<T>, int, int, int)
+
+  /**
+   * Merge the sorted subarrays values[lb..mid) and values[mid..ub) into
+   * a single sorted subarray.  Uses a temporary array the size of the
+   * second subarray, so works best when that one is the smaller.
+   */
+  static <T> void merge(T[] values, Comparator<T> order, int lb, int mid,
+                        int ub)
+  {
+    T[] tail = Arrays.copyOfRange(values, mid, ub);
+    // Fill values from the back, taking the larger of the two
+    // remaining values each time.
+    int i = mid - 1;
+    int j = tail.length - 1;
+    int k = ub - 1;
+    while (j >= 0)
+      {
+        if ((i >= lb) && (order.compare(values[i], tail[j]) > 0))
+          values[k--] = values[i--];
+        else
+          values[k--] = tail[j--];
+      } // while
+  } // merge(T[], Comparator<T>, int, int, int)
+
+  /**
+   * Merge the sorted subarrays values[lb..mid) and values[mid..ub),
+   * unless they are already in order.
+   */
+  static <T> void mergeIfNeeded(T[] values, Comparator<T> order, int lb,
+                                int mid, int ub)
+  {
+    if ((lb < mid) && (mid < ub)
+        && (order.compare(values[mid - 1], values[mid]) > 0))
+      merge(values, order, lb, mid, ub);
+  } // mergeIfNeeded(T[], Comparator<T>, int, int, int)
+
+  /**
+   * Reverse the subarray of values from lb (inclusive) to ub (exclusive).
+   */
+  static <T> void reverse(T[] values, int lb, int ub)
+  {
+    for (int i = lb, j = ub - 1; i < j; i++, j--)
+      swap(values, i, j);
+  } // reverse(T[], int, int)
+
+  /**
+   * Compute floor(log2(n)).
+   *
+   * @pre
+   *   n > 0
+   */
+  static int log2(int n)
+  {
+    return 31 - Integer.numberOfLeadingZeros(n);
+  } // log2(int)
+
+  /**
+   * Swap two elements in an array.
+   */
+  static <T> void swap(T[] values, int i, int j)
+  {
+    T tmp = values[i];
+    values[i] = values[j];
+    values[j] = tmp;
+  } // swap(T[], int, int)
+
+  /**
+   * Swap two elements in an array of ints.
+   */
+  static void swap(int[] values, int i, int j)
+  {
+    int tmp = values[i];
+    values[i] = values[j];
+    values[j] = tmp;
+  } // swap(int[], int, int)
+
+  /**
+   * Swap two elements in an array of longs.
+   */
+  static void swap(long[] values, int i, int j)
+  {
+    long tmp = values[i];
+    values[i] = values[j];
+    values[j] = tmp;
+  } // swap(long[], int, int)
+
+  /**
+   * Swap two elements in an array of doubles.
+   */
+  static void swap(double[] values, int i, int j)
+  {
+    double tmp = values[i];
+    values[i] = values[j];
+    values[j] = tmp;
+  } // swap(double[], int, int)
 
   // +----------------+--------------------------------------------------
   // | Helper Classes |
@@ -34,7 +2466,7 @@ public class Quicksorter
   /**
    * A simple representation of a range of integers.
    */
-  class Range
+  static class Range
   {
     int lb;
     int ub;
@@ -45,4 +2477,143 @@ public class Quicksorter
       this.ub = ub;
     } // Range(int, int)
   } // class IntPair
+
+  /**
+   * A fork-join task that sorts one subarray, forking the two sides
+   * of the partition until they fall below PARALLEL_THRESHOLD.
+   */
+  static class QsortTask<T>
+    extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    T[] values;
+    Comparator<T> order;
+    int lb;
+    int ub;
+
+    public QsortTask(T[] values, Comparator<T> order, int lb, int ub)
+    {
+      this.values = values;
+      this.order = order;
+      this.lb = lb;
+      this.ub = ub;
+    } // QsortTask(T[], Comparator<T>, int, int)
+
+    protected void compute()
+    {
+      if (ub - lb < PARALLEL_THRESHOLD)
+        {
+          qsort(values, order, lb, ub);
+          return;
+        } // if the subarray is small
+      Range mid = partition(values, order, lb, ub);
+      invokeAll(new QsortTask<T>(values, order, lb, mid.lb),
+                new QsortTask<T>(values, order, mid.ub, ub));
+    } // compute()
+  } // class QsortTask<T>
+
+  /**
+   * An iterator that sorts its array incrementally.  Uses a stack of
+   * boundaries, each of which separates the values before it from the
+   * (no smaller) values after it.  To find the next value, we partition
+   * the subarray from the current position to the nearest boundary,
+   * pushing new boundaries, until the smallest value is in place.
+   */
+  static class LazySortedIterator<T>
+    implements Iterator<T>
+  {
+    /**
+     * The values being sorted.
+     */
+    T[] values;
+
+    /**
+     * The order in which to return them.
+     */
+    Comparator<T> order;
+
+    /**
+     * The position of the next value to return.
+     */
+    int pos;
+
+    /**
+     * Every value before this index is in its sorted position.
+     */
+    int sortedTo;
+
+    /**
+     * The stack of boundaries, with the smallest on top.  The bottom
+     * of the stack is always values.length.
+     */
+    int[] bounds;
+
+    /**
+     * The number of boundaries on the stack.
+     */
+    int size;
+
+    public LazySortedIterator(T[] values, Comparator<T> order)
+    {
+      this.values = values;
+      this.order = order;
+      this.pos = 0;
+      this.sortedTo = 0;
+      this.bounds = new int[Integer.SIZE];
+      this.bounds[0] = values.length;
+      this.size = 1;
+    } // LazySortedIterator(T[], Comparator<T>)
+
+    public boolean hasNext()
+    {
+      return this.pos < this.values.length;
+    } // hasNext()
+
+    public T next()
+      throws NoSuchElementException
+    {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      if (this.pos >= this.sortedTo)
+        {
+          // Drop the boundaries we've passed.
+          while (this.bounds[this.size - 1] <= this.pos)
+            this.size--;
+          int ub = this.bounds[this.size - 1];
+          // Partition the values before the nearest boundary until the
+          // smallest of them is in place.
+          while (ub - this.pos > 1)
+            {
+              Range mid = partition(this.values, this.order, this.pos, ub);
+              if (mid.lb == this.pos)
+                {
+                  ub = mid.ub;
+                  break;
+                } // if the smallest values equal the pivot
+              push(mid.ub);
+              push(mid.lb);
+              ub = mid.lb;
+            } // while
+          this.sortedTo = ub;
+        } // if we need to partition
+      return this.values[this.pos++];
+    } // next()
+
+    public void remove()
+      throws UnsupportedOperationException
+    {
+      throw new UnsupportedOperationException();
+    } // remove()
+
+    /**
+     * Push a boundary onto the stack.
+     */
+    void push(int bound)
+    {
+      if (this.size == this.bounds.length)
+        this.bounds = Arrays.copyOf(this.bounds, 2 * this.size);
+      this.bounds[this.size++] = bound;
+    } // push(int)
+  } // class LazySortedIterator<T>
 } // class Quicksorter
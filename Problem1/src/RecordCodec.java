@@ -0,0 +1,25 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * A way to read and write records of type T in binary form.
+ */
+public interface RecordCodec<T>
+{
+  /**
+   * Read the next record from in.
+   *
+   * @throws EOFException
+   *   If in ends before the record does.
+   */
+  public T read(DataInput in)
+    throws IOException;
+
+  /**
+   * Write val to out so that read can get it back.
+   */
+  public void write(DataOutput out, T val)
+    throws IOException;
+} // interface RecordCodec<T>
@@ -2,7 +2,11 @@ import static org.junit.Assert.*;
 
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.Random;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
 import org.junit.Test;
 
 /**
@@ -251,6 +255,39 @@ public class SamTest
     return values;
   } // randomSortedInts
 
+  /**
+   * Make a copy of a sorted array in reverse order.
+   */
+  public static <T> T[] reversed(T[] sorted)
+  {
+    T[] values = sorted.clone();
+    for (int i = 0; i < values.length; i++)
+      {
+        values[i] = sorted[sorted.length - 1 - i];
+      } // for
+    return values;
+  } // reversed(T[])
+
+  /**
+   * Rearrange a sorted array into an "organ pipe": the even-numbered
+   * elements in increasing order, then the odd-numbered ones in
+   * decreasing order.
+   */
+  public static <T> T[] organPipe(T[] sorted)
+  {
+    T[] values = sorted.clone();
+    int half = (sorted.length + 1) / 2;
+    for (int i = 0; i < half; i++)
+      {
+        values[i] = sorted[2 * i];
+      } // for
+    for (int i = half; i < sorted.length; i++)
+      {
+        values[i] = sorted[2 * (sorted.length - i) - 1];
+      } // for
+    return values;
+  } // organPipe(T[])
+
   /**
    * Swap two elements in an array.
    * 
@@ -421,4 +458,859 @@ public class SamTest
                      byDistance, NUM_PERMUTATIONS);
   } // testPoints()
 
+  /**
+   * Make sure that the parallel sort works on arrays large enough
+   * to be split across tasks.
+   */
+  @Test
+  public void testParallel()
+  {
+    Integer[] sorted = randomSortedInts(10 * Quicksorter.PARALLEL_THRESHOLD);
+    Integer[] values = permute(sorted.clone());
+    Quicksorter.parallelQsort(values, increasing);
+    assertArrayEquals(sorted, values);
+
+    // A subrange should leave the rest of the array alone.
+    values = permute(sorted.clone());
+    Integer[] expected = values.clone();
+    Arrays.sort(expected, 100, expected.length - 100, increasing);
+    Quicksorter.parallelQsort(values, increasing, 100, values.length - 100);
+    assertArrayEquals(expected, values);
+  } // testParallel()
+
+  /**
+   * Make sure that the primitive sorts agree with Arrays.sort.
+   */
+  @Test
+  public void testPrimitives()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        int n = generator.nextInt(MAX_RANDOM_ARRAY_SIZE);
+        int[] ints = new int[n];
+        long[] longs = new long[n];
+        double[] doubles = new double[n];
+        for (int j = 0; j < n; j++)
+          {
+            ints[j] = generator.nextInt(n + 1) - n/2;
+            longs[j] = ((long) ints[j]) << 33;
+            doubles[j] = ints[j] / 4.0;
+          } // for
+        if (n > 2)
+          {
+            doubles[0] = Double.NaN;
+            doubles[1] = -0.0;
+            doubles[2] = 0.0;
+          } // if
+
+        int[] sortedInts = ints.clone();
+        Arrays.sort(sortedInts);
+        Quicksorter.qsort(ints);
+        assertArrayEquals(sortedInts, ints);
+
+        long[] sortedLongs = longs.clone();
+        Arrays.sort(sortedLongs);
+        Quicksorter.qsort(longs);
+        assertArrayEquals(sortedLongs, longs);
+
+        double[] sortedDoubles = doubles.clone();
+        Arrays.sort(sortedDoubles);
+        Quicksorter.qsort(doubles);
+        assertTrue(Arrays.equals(sortedDoubles, doubles));
+      } // for
+  } // testPrimitives()
+
+  /**
+   * Make sure that the dual-pivot sort agrees with the DNF sort.
+   */
+  @Test
+  public void testDualPivot()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        Integer[] sorted =
+            randomSortedInts(generator.nextInt(MAX_RANDOM_ARRAY_SIZE));
+        for (int j = 0; j < TESTS_PER_RANDOM_ARRAY; j++)
+          {
+            Integer[] values = permute(sorted.clone());
+            int[] ints = new int[values.length];
+            for (int k = 0; k < values.length; k++)
+              ints[k] = values[k];
+            Quicksorter.dualPivotQsort(values, increasing);
+            assertArrayEquals(sorted, values);
+            Quicksorter.dualPivotQsort(ints);
+            for (int k = 0; k < ints.length; k++)
+              assertEquals(sorted[k].intValue(), ints[k]);
+          } // for each permutation
+        // Already sorted input is a classic bad case.
+        Integer[] values = sorted.clone();
+        Quicksorter.dualPivotQsort(values, increasing);
+        assertArrayEquals(sorted, values);
+      } // for each array
+    // As are arrays of all the same value.
+    Integer[] same = new Integer[1000];
+    Arrays.fill(same, 7);
+    Quicksorter.dualPivotQsort(same, increasing);
+    checkSort(same, increasing);
+    // And sorted arrays of two values, where the middle part holds
+    // almost everything.
+    Integer[] twoValued = new Integer[100000];
+    int[] ints = new int[twoValued.length];
+    for (int i = 0; i < twoValued.length; i++)
+      {
+        ints[i] = (i < twoValued.length / 2) ? 0 : 1;
+        twoValued[i] = ints[i];
+      } // for
+    Integer[] expected = twoValued.clone();
+    int[] expectedInts = ints.clone();
+    Quicksorter.dualPivotQsort(twoValued, increasing);
+    assertArrayEquals(expected, twoValued);
+    Quicksorter.dualPivotQsort(ints);
+    assertArrayEquals(expectedInts, ints);
+  } // testDualPivot()
+
+  /**
+   * Make sure that introsort, and the heapsort it falls back on, work.
+   */
+  @Test
+  public void testIntrosort()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        Integer[] sorted =
+            randomSortedInts(generator.nextInt(MAX_RANDOM_ARRAY_SIZE));
+        for (int j = 0; j < TESTS_PER_RANDOM_ARRAY; j++)
+          {
+            Integer[] values = permute(sorted.clone());
+            Quicksorter.introsort(values, increasing);
+            assertArrayEquals(sorted, values);
+            // A depth of zero forces heapsort for the whole array.
+            values = permute(sorted.clone());
+            Quicksorter.introsort(values, increasing, 0, values.length, 0);
+            assertArrayEquals(sorted, values);
+          } // for each permutation
+      } // for each array
+  } // testIntrosort()
+
+  /**
+   * Make sure that the non-recursive sort works.
+   */
+  @Test
+  public void testIterative()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        Integer[] sorted =
+            randomSortedInts(generator.nextInt(MAX_RANDOM_ARRAY_SIZE));
+        for (int j = 0; j < TESTS_PER_RANDOM_ARRAY; j++)
+          {
+            Integer[] values = permute(sorted.clone());
+            Quicksorter.iterativeQsort(values, increasing);
+            assertArrayEquals(sorted, values);
+          } // for each permutation
+      } // for each array
+    // Large sorted arrays would need deep recursion in a naive sort.
+    Integer[] sorted = randomSortedInts(100000);
+    Integer[] values = sorted.clone();
+    Quicksorter.iterativeQsort(values, increasing);
+    assertArrayEquals(sorted, values);
+  } // testIterative()
+
+  /**
+   * Make sure that select and partialSort find the right values.
+   */
+  @Test
+  public void testSelect()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        Integer[] sorted =
+            randomSortedInts(1 + generator.nextInt(MAX_RANDOM_ARRAY_SIZE));
+        for (int j = 0; j < TESTS_PER_RANDOM_ARRAY; j++)
+          {
+            int k = generator.nextInt(sorted.length);
+            Integer[] values = permute(sorted.clone());
+            assertEquals(sorted[k], Quicksorter.select(values, increasing, k));
+            for (int l = 0; l < k; l++)
+              assertTrue(values[l] <= values[k]);
+            for (int l = k + 1; l < values.length; l++)
+              assertTrue(values[l] >= values[k]);
+
+            values = permute(sorted.clone());
+            Quicksorter.partialSort(values, increasing, k);
+            assertArrayEquals(Arrays.copyOf(sorted, k),
+                              Arrays.copyOf(values, k));
+          } // for each permutation
+      } // for each array
+  } // testSelect()
+
+  /**
+   * Make sure that sorting by extracted keys works.
+   */
+  @Test
+  public void testByKey()
+  {
+    String[] strings = new String[] { "zebra", "yellow", "xerox", "whatEVER",
+                                      "whatEVER", "VIOLIN", "Umbrella",
+                                      "tango" };
+    for (int i = 0; i < NUM_PERMUTATIONS; i++)
+      {
+        String[] values = permute(strings.clone());
+        Quicksorter.qsortByKey(values, new Function<String, String>()
+          {
+            public String apply(String str)
+            {
+              return str.toLowerCase();
+            } // apply(String)
+          }, reverseAlphabetical);
+        assertArrayEquals(strings, values);
+      } // for
+
+    Point[] points = new Point[] { new Point(0,0), new Point(1,0),
+                                   new Point(1,1), new Point(0,-2),
+                                   new Point(-2,-2), new Point(3,2) };
+    for (int i = 0; i < NUM_PERMUTATIONS; i++)
+      {
+        Point[] values = permute(points.clone());
+        Quicksorter.qsortByDoubleKey(values, new ToDoubleFunction<Point>()
+          {
+            public double applyAsDouble(Point pt)
+            {
+              return pt.distance();
+            } // applyAsDouble(Point)
+          });
+        assertArrayEquals(points, values);
+        values = permute(points.clone());
+        Quicksorter.qsortByLongKey(values, new ToLongFunction<Point>()
+          {
+            public long applyAsLong(Point pt)
+            {
+              return pt.x*pt.x + pt.y*pt.y;
+            } // applyAsLong(Point)
+          });
+        assertArrayEquals(points, values);
+      } // for
+  } // testByKey()
+
+  /**
+   * Make sure that the primitive-key sorts can be called with lambdas,
+   * which they couldn't when they were overloads of each other.
+   */
+  @Test
+  public void testByKeyLambdas()
+  {
+    String[] strings = new String[] { "a", "bb", "ccc", "dddd", "eeeee" };
+    Point[] points = new Point[] { new Point(0,0), new Point(1,0),
+                                   new Point(1,1), new Point(0,-2),
+                                   new Point(-2,-2), new Point(3,2) };
+    for (int i = 0; i < NUM_PERMUTATIONS; i++)
+      {
+        String[] words = permute(strings.clone());
+        Quicksorter.qsortByLongKey(words, s -> s.length());
+        assertArrayEquals(strings, words);
+        words = permute(strings.clone());
+        Quicksorter.qsortByDoubleKey(words, s -> s.length() / 2.0);
+        assertArrayEquals(strings, words);
+        Point[] values = permute(points.clone());
+        Quicksorter.qsortByDoubleKey(values, pt -> pt.distance());
+        assertArrayEquals(points, values);
+        values = permute(points.clone());
+        Quicksorter.qsortByLongKey(values, pt -> pt.x*pt.x + pt.y*pt.y);
+        assertArrayEquals(points, values);
+      } // for
+  } // testByKeyLambdas()
+
+  /**
+   * Make sure that argsort gives a sorting permutation and leaves the
+   * array alone.
+   */
+  @Test
+  public void testArgsort()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        Integer[] sorted =
+            randomSortedInts(generator.nextInt(MAX_RANDOM_ARRAY_SIZE));
+        Integer[] values = permute(sorted.clone());
+        Integer[] original = values.clone();
+        int[] perm = Quicksorter.argsort(values, increasing);
+        assertArrayEquals(original, values);
+        Integer[] result = new Integer[values.length];
+        boolean[] seen = new boolean[values.length];
+        for (int j = 0; j < perm.length; j++)
+          {
+            assertFalse(seen[perm[j]]);
+            seen[perm[j]] = true;
+            result[j] = values[perm[j]];
+          } // for
+        assertArrayEquals(sorted, result);
+      } // for
+  } // testArgsort()
+
+  /**
+   * Make sure that the adaptive sort works, and that it needs only
+   * a linear number of comparisons on nearly sorted input.
+   */
+  @Test
+  public void testAdaptive()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        Integer[] sorted =
+            randomSortedInts(generator.nextInt(MAX_RANDOM_ARRAY_SIZE));
+        for (int j = 0; j < TESTS_PER_RANDOM_ARRAY; j++)
+          {
+            Integer[] values = permute(sorted.clone());
+            Quicksorter.adaptiveQsort(values, increasing);
+            assertArrayEquals(sorted, values);
+          } // for each permutation
+      } // for each array
+
+    final int[] compares = new int[1];
+    Comparator<Integer> counting = new Comparator<Integer>()
+      {
+        public int compare(Integer left, Integer right)
+        {
+          compares[0]++;
+          return left.compareTo(right);
+        } // compare(Integer, Integer)
+      }; // new Comparator<Integer>
+    int n = 10000;
+    Integer[] sorted = randomSortedInts(n);
+
+    // Already sorted
+    Integer[] values = sorted.clone();
+    Quicksorter.adaptiveQsort(values, counting);
+    assertArrayEquals(sorted, values);
+    assertTrue(compares[0] < n);
+
+    // Reverse sorted, without duplicates
+    values = new Integer[n];
+    for (int j = 0; j < n; j++)
+      values[j] = n - j;
+    compares[0] = 0;
+    Quicksorter.adaptiveQsort(values, counting);
+    checkSort(values, increasing);
+    assertTrue(compares[0] < n);
+
+    // Sorted with a few random values appended
+    values = sorted.clone();
+    for (int j = n - 20; j < n; j++)
+      values[j] = generator.nextInt(n) - n;
+    Integer[] expected = values.clone();
+    Arrays.sort(expected);
+    compares[0] = 0;
+    Quicksorter.adaptiveQsort(values, counting);
+    assertArrayEquals(expected, values);
+    assertTrue(compares[0] < 3 * n);
+
+    // Sorted with a few values out of place
+    values = sorted.clone();
+    swap(values, n/2, n/2 + 1);
+    swap(values, n/3, n/3 + 2);
+    compares[0] = 0;
+    Quicksorter.adaptiveQsort(values, counting);
+    assertArrayEquals(sorted, values);
+    assertTrue(compares[0] < 3 * n);
+
+    // Organ pipe, which used to take quadratic time
+    values = organPipe(sorted);
+    compares[0] = 0;
+    Quicksorter.adaptiveQsort(values, counting);
+    assertArrayEquals(sorted, values);
+    assertTrue(compares[0] < 3 * n);
+
+    // And again, large enough that it used to overflow the stack
+    sorted = randomSortedInts(100000);
+    values = organPipe(sorted);
+    Quicksorter.adaptiveQsort(values, increasing);
+    assertArrayEquals(sorted, values);
+  } // testAdaptive()
+
+  /**
+   * Make sure that sorting with statistics sorts and counts sensibly.
+   */
+  @Test
+  public void testStats()
+  {
+    SortStats stats = new SortStats();
+    Integer[] sorted = randomSortedInts(1000);
+    Integer[] values = permute(sorted.clone());
+    Quicksorter.qsort(values, increasing, stats);
+    assertArrayEquals(sorted, values);
+    assertEquals(1, stats.calls());
+    assertTrue(stats.partitions() > 0);
+    assertTrue(stats.comparisons() >= sorted.length);
+    assertTrue(stats.maxDepth() > 1);
+    assertTrue(stats.maxDepth() < sorted.length);
+
+    // A second sort accumulates.
+    long comparisons = stats.comparisons();
+    Quicksorter.qsort(values, increasing, stats);
+    assertEquals(2, stats.calls());
+    assertTrue(stats.comparisons() > comparisons);
+
+    // Sorting a single value does no work.
+    stats.reset();
+    Quicksorter.qsort(new Integer[] { 1 }, increasing, stats);
+    assertEquals(0, stats.comparisons());
+    assertEquals(0, stats.maxDepth());
+  } // testStats()
+
+  /**
+   * Make sure that block partitioning works, including on arrays big
+   * enough to need several blocks and arrays with many duplicates.
+   */
+  @Test
+  public void testBlock()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        int n = generator.nextInt(20 * Quicksorter.BLOCK_SIZE);
+        Integer[] sorted = randomSortedInts(n);
+        for (int j = 0; j < NUM_PERMUTATIONS; j++)
+          {
+            Integer[] values = permute(sorted.clone());
+            int[] ints = new int[n];
+            for (int k = 0; k < n; k++)
+              ints[k] = values[k];
+            Quicksorter.blockQsort(values, increasing);
+            assertArrayEquals(sorted, values);
+            Quicksorter.blockQsort(ints);
+            for (int k = 0; k < n; k++)
+              assertEquals(sorted[k].intValue(), ints[k]);
+          } // for each permutation
+      } // for each array
+    int[] ints = new int[10000];
+    for (int i = 0; i < ints.length; i++)
+      ints[i] = generator.nextInt(3);
+    int[] expected = ints.clone();
+    Arrays.sort(expected);
+    Quicksorter.blockQsort(ints);
+    assertArrayEquals(expected, ints);
+    // Presorted inputs used to make the sort quadratic and overflow
+    // the stack.
+    Integer[] sorted = randomSortedInts(100000);
+    for (Integer[] shape : Arrays.asList(sorted, reversed(sorted),
+                                         organPipe(sorted)))
+      {
+        Integer[] values = shape.clone();
+        ints = new int[values.length];
+        for (int k = 0; k < values.length; k++)
+          ints[k] = values[k];
+        Quicksorter.blockQsort(values, increasing);
+        assertArrayEquals(sorted, values);
+        Quicksorter.blockQsort(ints);
+        for (int k = 0; k < ints.length; k++)
+          assertEquals(sorted[k].intValue(), ints[k]);
+      } // for each shape
+  } // testBlock()
+
+  /**
+   * When the block partition's pivot is the smallest value, it should
+   * gather every copy of that pivot, not partition around some other
+   * value.
+   */
+  @Test
+  public void testBlockMinimumPivot()
+  {
+    int n = 964;
+    Integer[] values = new Integer[n];
+    int[] ints = new int[n];
+    int zeros = 0;
+    for (int i = 0; i < n; i++)
+      {
+        // Every third value is 0.  The ninther's step is 120, so its
+        // first and last groups of three, and so the ninther itself,
+        // are all 0, but the middle element is not.
+        ints[i] = (i % 3 == 0) ? 0 : 1 + generator.nextInt(100);
+        values[i] = ints[i];
+        zeros += (ints[i] == 0) ? 1 : 0;
+      } // for
+    int[] left = new int[Quicksorter.BLOCK_SIZE];
+    int[] right = new int[Quicksorter.BLOCK_SIZE];
+    Quicksorter.Range mid =
+        Quicksorter.blockPartition(values, increasing, 0, n, left, right);
+    assertEquals(0, mid.lb);
+    assertEquals(zeros, mid.ub);
+    mid = Quicksorter.blockPartition(ints, 0, n, left, right);
+    assertEquals(0, mid.lb);
+    assertEquals(zeros, mid.ub);
+    for (int i = zeros; i < n; i++)
+      assertTrue((values[i] > 0) && (ints[i] > 0));
+  } // testBlockMinimumPivot()
+
+  /**
+   * Make sure that sorting keys carries the payloads along.
+   */
+  @Test
+  public void testPayload()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        int n = generator.nextInt(MAX_RANDOM_ARRAY_SIZE);
+        int[] keys = new int[n];
+        int[] payload = new int[n];
+        long[] longKeys = new long[n];
+        String[] strings = new String[n];
+        for (int j = 0; j < n; j++)
+          {
+            keys[j] = generator.nextInt(n + 1);
+            payload[j] = -keys[j];
+            longKeys[j] = keys[j];
+            strings[j] = Integer.toString(keys[j]);
+          } // for
+        Quicksorter.qsort(keys, payload);
+        Quicksorter.qsort(longKeys, strings);
+        for (int j = 0; j < n; j++)
+          {
+            if (j > 0)
+              assertTrue(keys[j - 1] <= keys[j]);
+            assertEquals(-keys[j], payload[j]);
+            assertEquals(keys[j], longKeys[j]);
+            assertEquals(Integer.toString(keys[j]), strings[j]);
+          } // for
+      } // for
+  } // testPayload()
+
+  /**
+   * Make sure that the lazy iterator returns the values in order,
+   * whether or not we read them all.
+   */
+  @Test
+  public void testLazySorted()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        Integer[] sorted =
+            randomSortedInts(generator.nextInt(MAX_RANDOM_ARRAY_SIZE));
+        for (int j = 0; j < NUM_PERMUTATIONS; j++)
+          {
+            Integer[] values = permute(sorted.clone());
+            Iterator<Integer> it = Quicksorter.lazySorted(values, increasing);
+            int k = generator.nextInt(sorted.length + 1);
+            for (int l = 0; l < k; l++)
+              assertEquals(sorted[l], it.next());
+            if (k == sorted.length)
+              {
+                assertFalse(it.hasNext());
+                assertArrayEquals(sorted, values);
+              } // if we read everything
+          } // for each permutation
+      } // for each array
+  } // testLazySorted()
+
+  /**
+   * Make sure that the vectorized sort works.  This uses the scalar
+   * fallback unless IntVectorPartitioner has been built and
+   * jdk.incubator.vector is available.
+   */
+  @Test
+  public void testVector()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        int n = generator.nextInt(4 * MAX_RANDOM_ARRAY_SIZE);
+        int[] values = new int[n];
+        for (int j = 0; j < n; j++)
+          values[j] = generator.nextInt(n + 1) - n/2;
+        int[] expected = values.clone();
+        Arrays.sort(expected);
+        Quicksorter.vectorQsort(values);
+        assertArrayEquals(expected, values);
+      } // for
+    int[] values = new int[1000];
+    Arrays.fill(values, 3);
+    values[500] = 2;
+    int[] expected = values.clone();
+    Arrays.sort(expected);
+    Quicksorter.vectorQsort(values);
+    assertArrayEquals(expected, values);
+    // Reversed input used to overflow the stack.
+    values = new int[100000];
+    expected = new int[values.length];
+    for (int i = 0; i < values.length; i++)
+      {
+        values[i] = values.length - i;
+        expected[i] = i + 1;
+      } // for
+    Quicksorter.vectorQsort(values);
+    assertArrayEquals(expected, values);
+  } // testVector()
+
+  /**
+   * Make sure that sorting works with each of the pivot strategies, and
+   * that seeded random pivots are repeatable.
+   */
+  @Test
+  public void testPivots()
+  {
+    PivotStrategy[] strategies =
+        new PivotStrategy[] { Pivots.FIRST, Pivots.MIDDLE,
+                              Pivots.MEDIAN_OF_THREE, Pivots.NINTHER,
+                              Pivots.DEFAULT, Pivots.random(42) };
+    for (PivotStrategy pivots : strategies)
+      {
+        for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+          {
+            Integer[] sorted =
+                randomSortedInts(generator.nextInt(MAX_RANDOM_ARRAY_SIZE));
+            Integer[] values = permute(sorted.clone());
+            Quicksorter.qsort(values, increasing, pivots);
+            assertArrayEquals(sorted, values);
+          } // for each array
+      } // for each strategy
+
+    Integer[] values = permute(randomSortedInts(1000));
+    PivotStrategy first = Pivots.random(207);
+    PivotStrategy second = Pivots.random(207);
+    for (int i = 0; i < 100; i++)
+      assertEquals(first.choose(values, increasing, i, values.length),
+                   second.choose(values, increasing, i, values.length));
+  } // testPivots()
+
+  /**
+   * Make sure that the natural-order sorts work, both the general one
+   * and the specialized ones.
+   */
+  @Test
+  public void testNatural()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        Integer[] sorted =
+            randomSortedInts(generator.nextInt(MAX_RANDOM_ARRAY_SIZE));
+        int n = sorted.length;
+        Long[] sortedLongs = new Long[n];
+        String[] sortedStrings = new String[n];
+        for (int j = 0; j < n; j++)
+          {
+            sortedLongs[j] = ((long) sorted[j]) << 33;
+            sortedStrings[j] = String.format("%08d", sorted[j] + n);
+          } // for
+
+        Integer[] ints = permute(sorted.clone());
+        Quicksorter.qsort(ints);
+        assertArrayEquals(sorted, ints);
+
+        Long[] longs = permute(sortedLongs.clone());
+        Quicksorter.qsort(longs);
+        assertArrayEquals(sortedLongs, longs);
+
+        String[] strings = permute(sortedStrings.clone());
+        Quicksorter.qsort(strings);
+        assertArrayEquals(sortedStrings, strings);
+
+        // Doubles have no specialized version.
+        Double[] sortedDoubles = new Double[n];
+        for (int j = 0; j < n; j++)
+          sortedDoubles[j] = sorted[j] / 2.0;
+        Double[] doubles = permute(sortedDoubles.clone());
+        Quicksorter.qsort(doubles);
+        assertArrayEquals(sortedDoubles, doubles);
+      } // for
+  } // testNatural()
+
+  /**
+   * Make sure that sortDistinct keeps exactly one copy of each value
+   * and doesn't lose any elements.
+   */
+  @Test
+  public void testSortDistinct()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        Integer[] sorted =
+            randomSortedInts(generator.nextInt(MAX_RANDOM_ARRAY_SIZE));
+        Integer[] distinct = new Integer[sorted.length];
+        int d = 0;
+        for (int j = 0; j < sorted.length; j++)
+          if ((j == 0) || !sorted[j].equals(sorted[j - 1]))
+            distinct[d++] = sorted[j];
+        for (int j = 0; j < NUM_PERMUTATIONS; j++)
+          {
+            Integer[] values = permute(sorted.clone());
+            assertEquals(d, Quicksorter.sortDistinct(values, increasing));
+            assertArrayEquals(Arrays.copyOf(distinct, d),
+                              Arrays.copyOf(values, d));
+            Arrays.sort(values);
+            assertArrayEquals(sorted, values);
+          } // for each permutation
+      } // for each array
+  } // testSortDistinct()
+
+  /**
+   * Make sure that multikey quicksort puts strings in the same order as
+   * compareTo, including strings that are prefixes of each other.
+   */
+  @Test
+  public void testMultikey()
+  {
+    String[] prefixes = new String[] { "", "http://", "http://example.com/",
+                                       "http://example.com/a/b/c/" };
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        int n = generator.nextInt(10 * MAX_RANDOM_ARRAY_SIZE);
+        String[] values = new String[n];
+        for (int j = 0; j < n; j++)
+          {
+            StringBuilder str =
+                new StringBuilder(prefixes[generator.nextInt(prefixes.length)]);
+            int len = generator.nextInt(4);
+            for (int k = 0; k < len; k++)
+              str.append((char) ('a' + generator.nextInt(3)));
+            values[j] = str.toString();
+          } // for
+        String[] expected = values.clone();
+        Arrays.sort(expected);
+        Quicksorter.multikeyQsort(values);
+        assertArrayEquals(expected, values);
+      } // for
+  } // testMultikey()
+
+  /**
+   * Make sure that the stable sort sorts and keeps equal values in
+   * their original order.
+   */
+  @Test
+  public void testStable()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        int n = generator.nextInt(10 * MAX_RANDOM_ARRAY_SIZE);
+        final int[] keys = new int[n];
+        Integer[] values = new Integer[n];
+        int distinct = 1 + generator.nextInt(8);
+        for (int j = 0; j < n; j++)
+          {
+            keys[j] = generator.nextInt(distinct);
+            values[j] = j;
+          } // for
+        Quicksorter.stableQsort(values, byKey(keys));
+        checkStable(values, keys);
+      } // for
+
+    // Organ-pipe keys, with two copies of each, used to take quadratic
+    // time.  Now they fall back to merge sort, which must be stable too.
+    int n = 20000;
+    int[] keys = new int[n];
+    Integer[] values = new Integer[n];
+    for (int j = 0; j < n; j++)
+      {
+        keys[j] = Math.min(j, n - 1 - j) / 2;
+        values[j] = j;
+      } // for
+    Quicksorter.stableQsort(values, byKey(keys));
+    checkStable(values, keys);
+    for (int j = 0; j < n; j++)
+      {
+        keys[j] = generator.nextInt(8);
+        values[j] = j;
+      } // for
+    Quicksorter.mergeSort(values, byKey(keys), 0, n, new Object[n]);
+    checkStable(values, keys);
+
+    // Nested sorts on the same thread get separate buffers.
+    final Integer[] inner = randomSortedInts(100);
+    Integer[] outer = randomSortedInts(100);
+    permute(outer);
+    Quicksorter.stableQsort(outer, new Comparator<Integer>()
+      {
+        public int compare(Integer left, Integer right)
+        {
+          permute(inner);
+          Quicksorter.stableQsort(inner, increasing);
+          return left.compareTo(right);
+        } // compare(Integer, Integer)
+      }); // new Comparator<Integer>
+    checkSort(outer, increasing);
+    checkSort(inner, increasing);
+  } // testStable()
+
+  /**
+   * Build a comparator that orders indices by their keys.
+   */
+  static Comparator<Integer> byKey(final int[] keys)
+  {
+    return new Comparator<Integer>()
+      {
+        public int compare(Integer left, Integer right)
+        {
+          return Integer.compare(keys[left], keys[right]);
+        } // compare(Integer, Integer)
+      }; // new Comparator<Integer>
+  } // byKey(int[])
+
+  /**
+   * Check that indices, which started out in increasing order, have
+   * been stably sorted by their keys.
+   */
+  static void checkStable(Integer[] indices, int[] keys)
+  {
+    for (int j = 1; j < indices.length; j++)
+      {
+        int order = Integer.compare(keys[indices[j - 1]], keys[indices[j]]);
+        assertTrue((order < 0)
+                   || ((order == 0) && (indices[j - 1] < indices[j])));
+      } // for
+  } // checkStable(Integer[], int[])
+
+  /**
+   * Make sure that mergeSortedRuns merges any number of runs, including
+   * empty ones.
+   */
+  @Test
+  public void testMergeSortedRuns()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        int n = generator.nextInt(10 * MAX_RANDOM_ARRAY_SIZE);
+        Integer[] values = permute(randomSortedInts(n));
+        int[] boundaries = new int[generator.nextInt(10)];
+        for (int j = 0; j < boundaries.length; j++)
+          boundaries[j] = generator.nextInt(n + 1);
+        Arrays.sort(boundaries);
+        int start = 0;
+        for (int j = 0; j <= boundaries.length; j++)
+          {
+            int end = (j < boundaries.length) ? boundaries[j] : n;
+            Arrays.sort(values, start, end, increasing);
+            start = end;
+          } // for
+        Integer[] expected = values.clone();
+        Arrays.sort(expected, increasing);
+        Quicksorter.mergeSortedRuns(values, boundaries, increasing);
+        assertArrayEquals(expected, values);
+      } // for
+    try
+      {
+        Quicksorter.mergeSortedRuns(new Integer[3], new int[] { 2, 1 },
+                                    increasing);
+        fail("decreasing boundaries accepted");
+      } // try
+    catch (IllegalArgumentException e)
+      {
+      } // catch (IllegalArgumentException)
+  } // testMergeSortedRuns()
+
+  /**
+   * Make sure that resortAfterAppend sorts arrays with a sorted prefix
+   * of any length.
+   */
+  @Test
+  public void testResortAfterAppend()
+  {
+    for (int i = 0; i < NUM_RANDOM_ARRAYS; i++)
+      {
+        int n = generator.nextInt(10 * MAX_RANDOM_ARRAY_SIZE);
+        Integer[] values = permute(randomSortedInts(n));
+        int prefix = generator.nextInt(n + 1);
+        Arrays.sort(values, 0, prefix, increasing);
+        Integer[] expected = values.clone();
+        Arrays.sort(expected, increasing);
+        Quicksorter.resortAfterAppend(values, prefix, increasing);
+        assertArrayEquals(expected, values);
+      } // for
+  } // testResortAfterAppend()
+
 } // SamTest
@@ -0,0 +1,268 @@
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A parallel sample sort for very large arrays.  We choose p-1
+ * splitters from a random sample, classify every element into one of
+ * p buckets in parallel, scatter the elements to their buckets in a
+ * single pass, and then sort the buckets in parallel with Quicksorter.
+ * Unlike a parallel quicksort, no step has to look at the whole array
+ * on a single thread.
+ *
+ * A heavily repeated value shows up as repeated splitters.  In that case,
+ * as in IPS4o, each splitter also gets a bucket of its own for the
+ * values equal to it.  Those buckets need no sorting, so a heavy key
+ * can't leave one task sorting most of the array.
+ */
+public class SampleSorter
+{
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The size below which we just use Quicksorter.qsort.
+   */
+  public static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+
+  /**
+   * The number of samples we take for each bucket.
+   */
+  public static final int OVERSAMPLING = 32;
+
+  // +----------------+--------------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Sort values in place using order to compare values, using the
+   * common fork-join pool.
+   */
+  public static <T> void sort(T[] values, Comparator<T> order)
+  {
+    sort(values, order, ForkJoinPool.commonPool());
+  } // sort(T[], Comparator<T>)
+
+  /**
+   * Sort values in place using order to compare values, using one
+   * bucket for each thread in pool.
+   *
+   * @pre
+   *   order can safely be called from multiple threads at once.
+   */
+  public static <T> void sort(T[] values, Comparator<T> order,
+                              ForkJoinPool pool)
+  {
+    sort(values, order, pool, pool.getParallelism());
+  } // sort(T[], Comparator<T>, ForkJoinPool)
+
+  /**
+   * Sort values in place using order to compare values, splitting them
+   * into p buckets that are sorted on pool.
+   *
+   * @pre
+   *   order can safely be called from multiple threads at once.
+   */
+  public static <T> void sort(final T[] values, final Comparator<T> order,
+                              ForkJoinPool pool, final int p)
+  {
+    final int n = values.length;
+    if ((n < SEQUENTIAL_THRESHOLD) || (p < 2))
+      {
+        Quicksorter.qsort(values, order);
+        return;
+      } // if there's no point in splitting
+
+    // Choose the splitters from a sorted random sample, dropping
+    // repeats.
+    T[] sample = newArray(values, p * OVERSAMPLING);
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < sample.length; i++)
+      sample[i] = values[random.nextInt(n)];
+    Quicksorter.qsort(sample, order);
+    T[] candidates = newArray(values, p - 1);
+    int distinct = 0;
+    for (int i = 0; i < p - 1; i++)
+      {
+        T candidate = sample[(i + 1) * OVERSAMPLING];
+        if ((distinct == 0)
+            || (order.compare(candidates[distinct - 1], candidate) < 0))
+          candidates[distinct++] = candidate;
+      } // for
+    final T[] splitters = Arrays.copyOf(candidates, distinct);
+    // If some value filled more than one splitter, give each splitter
+    // an equality bucket.  Bucket 2i+1 then holds the values equal to
+    // splitters[i], and bucket 2i those between it and the one before.
+    final boolean equality = (distinct < p - 1);
+    final int numBuckets = equality ? 2 * distinct + 1 : distinct + 1;
+
+    // Classify the elements.  Each chunk of the array counts how many
+    // of its elements go in each bucket.
+    final int[] buckets = new int[n];
+    final int[][] counts = new int[p][numBuckets];
+    ArrayList<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+    for (int c = 0; c < p; c++)
+      {
+        final int chunk = c;
+        tasks.add(new RecursiveAction()
+          {
+            private static final long serialVersionUID = 1L;
+
+            protected void compute()
+            {
+              int[] count = counts[chunk];
+              for (int i = chunkStart(n, p, chunk);
+                   i < chunkStart(n, p, chunk + 1); i++)
+                {
+                  int bucket = bucket(values[i], splitters, order, equality);
+                  buckets[i] = bucket;
+                  count[bucket]++;
+                } // for
+            } // compute()
+          }); // new RecursiveAction
+      } // for each chunk
+    runAll(pool, tasks);
+
+    // Turn the counts into the position at which each chunk starts
+    // writing each bucket.  bounds[b] is the start of bucket b.
+    final int[] bounds = new int[numBuckets + 1];
+    int pos = 0;
+    for (int b = 0; b < numBuckets; b++)
+      {
+        bounds[b] = pos;
+        for (int c = 0; c < p; c++)
+          {
+            int count = counts[c][b];
+            counts[c][b] = pos;
+            pos += count;
+          } // for each chunk
+      } // for each bucket
+    bounds[numBuckets] = n;
+
+    // Scatter the elements to their buckets.
+    final T[] source = values.clone();
+    tasks.clear();
+    for (int c = 0; c < p; c++)
+      {
+        final int chunk = c;
+        tasks.add(new RecursiveAction()
+          {
+            private static final long serialVersionUID = 1L;
+
+            protected void compute()
+            {
+              int[] next = counts[chunk];
+              for (int i = chunkStart(n, p, chunk);
+                   i < chunkStart(n, p, chunk + 1); i++)
+                values[next[buckets[i]]++] = source[i];
+            } // compute()
+          }); // new RecursiveAction
+      } // for each chunk
+    runAll(pool, tasks);
+
+    // Sort the buckets, except for the equality buckets, which are
+    // already sorted.
+    tasks.clear();
+    for (int b = 0; b < numBuckets; b++)
+      {
+        if (equality && (b % 2 == 1))
+          continue;
+        final int bucket = b;
+        tasks.add(new RecursiveAction()
+          {
+            private static final long serialVersionUID = 1L;
+
+            protected void compute()
+            {
+              Quicksorter.qsort(values, order, bounds[bucket],
+                                bounds[bucket + 1]);
+            } // compute()
+          }); // new RecursiveAction
+      } // for each bucket
+    runAll(pool, tasks);
+  } // sort(T[], Comparator<T>, ForkJoinPool, int)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find the bucket for val: the index of the first splitter that is
+   * at least val, or splitters.length if there is none.
+   */
+  static <T> int bucket(T val, T[] splitters, Comparator<T> order)
+  {
+    int lb = 0;
+    int ub = splitters.length;
+    while (lb < ub)
+      {
+        int mid = lb + (ub - lb) / 2;
+        if (order.compare(splitters[mid], val) < 0)
+          lb = mid + 1;
+        else
+          ub = mid;
+      } // while
+    return lb;
+  } // bucket(T, T[], Comparator<T>)
+
+  /**
+   * Find the bucket for val when the splitters are distinct.  Without
+   * equality buckets, that's just bucket(val, splitters, order).  With
+   * them, it's 2i+1 if val equals splitters[i], and otherwise 2i, where
+   * i is the index of the first splitter larger than val.
+   */
+  static <T> int bucket(T val, T[] splitters, Comparator<T> order,
+                        boolean equality)
+  {
+    int i = bucket(val, splitters, order);
+    if (!equality)
+      return i;
+    else if ((i < splitters.length) && (order.compare(splitters[i], val) == 0))
+      return 2 * i + 1;
+    else
+      return 2 * i;
+  } // bucket(T, T[], Comparator<T>, boolean)
+
+  /**
+   * Find where the given chunk starts when n elements are split into
+   * p nearly-equal chunks.
+   */
+  static int chunkStart(int n, int p, int chunk)
+  {
+    return (int) ((long) n * chunk / p);
+  } // chunkStart(int, int, int)
+
+  /**
+   * Run all of the tasks on pool and wait for them to finish.
+   */
+  static void runAll(ForkJoinPool pool,
+                     final ArrayList<RecursiveAction> tasks)
+  {
+    pool.invoke(new RecursiveAction()
+      {
+        private static final long serialVersionUID = 1L;
+
+        protected void compute()
+        {
+          invokeAll(tasks);
+        } // compute()
+      }); // new RecursiveAction
+  } // runAll(ForkJoinPool, ArrayList<RecursiveAction>)
+
+  /**
+   * Create a new array of the given size with the same element type
+   * as values.
+   */
+  static <T> T[] newArray(T[] values, int size)
+  {
+    @SuppressWarnings("unchecked")
+    T[] result =
+        (T[]) Array.newInstance(values.getClass().getComponentType(), size);
+    return result;
+  } // newArray(T[], int)
+} // class SampleSorter
@@ -0,0 +1,109 @@
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+/**
+ * Tests of the parallel sample sort.
+ */
+public class SampleSorterTests
+{
+  // +-----------+-------------------------------------------------------
+  // | Utilities |
+  // +-----------+
+
+  /**
+   * Sort a permutation of sorted with p buckets and make sure that we
+   * get sorted back.
+   */
+  public static void checkSort(Integer[] sorted, int p)
+  {
+    Integer[] values = SamTest.permute(sorted.clone());
+    SampleSorter.sort(values, SamTest.increasing, ForkJoinPool.commonPool(),
+                      p);
+    assertArrayEquals(sorted, values);
+  } // checkSort(Integer[], int)
+
+  // +-------+-----------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Arrays too small to be worth splitting.
+   */
+  @Test
+  public void testSmall()
+  {
+    checkSort(new Integer[] { }, 4);
+    checkSort(new Integer[] { 1 }, 4);
+    checkSort(SamTest.randomSortedInts(100), 4);
+  } // testSmall()
+
+  /**
+   * Large arrays with various numbers of buckets.
+   */
+  @Test
+  public void testLarge()
+  {
+    Integer[] sorted =
+        SamTest.randomSortedInts(4 * SampleSorter.SEQUENTIAL_THRESHOLD);
+    checkSort(sorted, 2);
+    checkSort(sorted, 3);
+    checkSort(sorted, 16);
+    checkSort(sorted, ForkJoinPool.commonPool().getParallelism());
+  } // testLarge()
+
+  /**
+   * Large arrays with only a few distinct values, so that many
+   * splitters are equal.
+   */
+  @Test
+  public void testDuplicates()
+  {
+    Integer[] sorted = new Integer[2 * SampleSorter.SEQUENTIAL_THRESHOLD];
+    for (int i = 0; i < sorted.length; i++)
+      sorted[i] = i * 3 / sorted.length;
+    checkSort(sorted, 8);
+    Arrays.fill(sorted, 5);
+    checkSort(sorted, 8);
+  } // testDuplicates()
+
+  /**
+   * A heavy key among otherwise distinct values, which repeats in the
+   * splitters and so gets an equality bucket.
+   */
+  @Test
+  public void testHeavyKey()
+  {
+    Integer[] sorted = new Integer[4 * SampleSorter.SEQUENTIAL_THRESHOLD];
+    for (int i = 0; i < sorted.length; i++)
+      sorted[i] = (i < sorted.length / 4) || (i >= sorted.length / 2)
+                  ? i
+                  : sorted.length / 4;
+    checkSort(sorted, 2);
+    checkSort(sorted, 16);
+  } // testHeavyKey()
+
+  /**
+   * Make sure that values equal to a splitter go to its equality
+   * bucket, and that the others go between the splitters.
+   */
+  @Test
+  public void testEqualityBuckets()
+  {
+    Integer[] splitters = new Integer[] { 10, 20, 30 };
+    Integer[] vals = new Integer[] { 5, 10, 15, 19, 20, 25, 30, 35 };
+    int[] withEquality = new int[] { 0, 1, 2, 2, 3, 4, 5, 6 };
+    int[] without = new int[] { 0, 0, 1, 1, 1, 2, 2, 3 };
+    for (int i = 0; i < vals.length; i++)
+      {
+        assertEquals(withEquality[i],
+                     SampleSorter.bucket(vals[i], splitters,
+                                         SamTest.increasing, true));
+        assertEquals(without[i],
+                     SampleSorter.bucket(vals[i], splitters,
+                                         SamTest.increasing, false));
+      } // for
+  } // testEqualityBuckets()
+} // class SampleSorterTests
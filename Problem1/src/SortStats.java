@@ -0,0 +1,173 @@
+/**
+ * Statistics gathered while sorting.  Pass one to the Quicksorter
+ * methods that accept it to find out how much work a sort did.  The
+ * same object may be used for several sorts, in which case the counts
+ * accumulate.  Not safe to share between threads.
+ */
+public class SortStats
+{
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of times the comparator was called.
+   */
+  long comparisons;
+
+  /**
+   * The number of times two elements were swapped.
+   */
+  long swaps;
+
+  /**
+   * The number of partitions performed.
+   */
+  long partitions;
+
+  /**
+   * The greatest recursion depth reached.  A sort that partitions the
+   * whole array once and no more has depth 1.
+   */
+  int maxDepth;
+
+  /**
+   * The number of sorts recorded.
+   */
+  int calls;
+
+  /**
+   * The time taken by the most recent sort, in nanoseconds.
+   */
+  long lastNanos;
+
+  /**
+   * The time taken by all of the sorts, in nanoseconds.
+   */
+  long totalNanos;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new set of statistics with all counts zero.
+   */
+  public SortStats()
+  {
+    this.reset();
+  } // SortStats()
+
+  // +------------------+------------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Convert to a string for printing.
+   */
+  public String toString()
+  {
+    return "comparisons=" + this.comparisons + ", swaps=" + this.swaps
+           + ", partitions=" + this.partitions + ", maxDepth=" + this.maxDepth
+           + ", calls=" + this.calls + ", lastNanos=" + this.lastNanos
+           + ", totalNanos=" + this.totalNanos;
+  } // toString()
+
+  // +-----------+-------------------------------------------------------
+  // | Observers |
+  // +-----------+
+
+  /**
+   * Get the number of times the comparator was called.
+   */
+  public long comparisons()
+  {
+    return this.comparisons;
+  } // comparisons()
+
+  /**
+   * Get the number of times two elements were swapped.
+   */
+  public long swaps()
+  {
+    return this.swaps;
+  } // swaps()
+
+  /**
+   * Get the number of partitions performed.
+   */
+  public long partitions()
+  {
+    return this.partitions;
+  } // partitions()
+
+  /**
+   * Get the greatest recursion depth reached.
+   */
+  public int maxDepth()
+  {
+    return this.maxDepth;
+  } // maxDepth()
+
+  /**
+   * Get the number of sorts recorded.
+   */
+  public int calls()
+  {
+    return this.calls;
+  } // calls()
+
+  /**
+   * Get the time taken by the most recent sort, in nanoseconds.
+   */
+  public long lastNanos()
+  {
+    return this.lastNanos;
+  } // lastNanos()
+
+  /**
+   * Get the time taken by all of the sorts, in nanoseconds.
+   */
+  public long totalNanos()
+  {
+    return this.totalNanos;
+  } // totalNanos()
+
+  // +----------+--------------------------------------------------------
+  // | Mutators |
+  // +----------+
+
+  /**
+   * Set all counts back to zero.
+   */
+  public void reset()
+  {
+    this.comparisons = 0;
+    this.swaps = 0;
+    this.partitions = 0;
+    this.maxDepth = 0;
+    this.calls = 0;
+    this.lastNanos = 0;
+    this.totalNanos = 0;
+  } // reset()
+
+  /**
+   * Note that we have reached the given recursion depth.
+   */
+  void depth(int depth)
+  {
+    if (depth > this.maxDepth)
+      this.maxDepth = depth;
+  } // depth(int)
+
+  /**
+   * Note that a sort has finished after the given number of
+   * nanoseconds.
+   */
+  void call(long nanos)
+  {
+    this.calls++;
+    this.lastNanos = nanos;
+    this.totalNanos += nanos;
+  } // call(long)
+} // class SortStats
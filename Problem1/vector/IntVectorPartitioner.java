@@ -0,0 +1,106 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A partition kernel for ints built on the (incubating) Java Vector API.
+ * Each step loads a vector of values, compares every lane with the pivot
+ * at once, and uses a lookup table of shuffles to pack the small lanes
+ * to the left and the large lanes to the right.
+ *
+ * This class needs the jdk.incubator.vector module, so it lives outside
+ * src.  To use it, compile it into the same output directory as the
+ * rest of the project with
+ *
+ *   javac --add-modules jdk.incubator.vector -cp bin -d bin vector/*.java
+ *
+ * and run with --add-modules jdk.incubator.vector.  When it is missing,
+ * Quicksorter.vectorQsort falls back to scalar code.
+ */
+public class IntVectorPartitioner
+  implements IntPartitioner
+{
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The vector shape we use.  256-bit vectors (eight ints) keep the
+   * shuffle table small and are supported on both AVX2 and AVX-512.
+   */
+  static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_256;
+
+  /**
+   * The number of lanes in each vector.
+   */
+  static final int LANES = SPECIES.length();
+
+  /**
+   * The LANES lane indices starting at PACK[bits*LANES] move the lanes
+   * whose bits are set in bits to the front of a vector, in order,
+   * followed by the other lanes.
+   */
+  static final int[] PACK = makePackTable();
+
+  // +---------+---------------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  public int partition(int[] values, int lb, int ub, int pivot, int[] scratch)
+  {
+    // Small values are written back into values, which is safe since
+    // we never write past the end of the vector we've just read.
+    // Large values go to scratch and are copied back at the end.
+    int small = lb;
+    int large = 0;
+    int i = lb;
+    int bound = lb + SPECIES.loopBound(ub - lb);
+    for (; i < bound; i += LANES)
+      {
+        IntVector v = IntVector.fromArray(SPECIES, values, i);
+        VectorMask<Integer> isSmall = v.compare(VectorOperators.LT, pivot);
+        int bits = (int) isSmall.toLong();
+        int count = isSmall.trueCount();
+        IntVector.fromArray(SPECIES, PACK, bits * LANES)
+                 .selectFrom(v).intoArray(values, small);
+        IntVector.fromArray(SPECIES, PACK, (~bits & ((1 << LANES) - 1)) * LANES)
+                 .selectFrom(v).intoArray(scratch, large);
+        small += count;
+        large += LANES - count;
+      } // for each vector
+    for (; i < ub; i++)
+      {
+        int val = values[i];
+        if (val < pivot)
+          values[small++] = val;
+        else
+          scratch[large++] = val;
+      } // for each remaining value
+    System.arraycopy(scratch, 0, values, small, large);
+    return small;
+  } // partition(int[], int, int, int, int[])
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Build the table of shuffles for PACK.
+   */
+  static int[] makePackTable()
+  {
+    int[] table = new int[(1 << LANES) * LANES];
+    int pos = 0;
+    for (int bits = 0; bits < (1 << LANES); bits++)
+      {
+        for (int lane = 0; lane < LANES; lane++)
+          if ((bits & (1 << lane)) != 0)
+            table[pos++] = lane;
+        for (int lane = 0; lane < LANES; lane++)
+          if ((bits & (1 << lane)) == 0)
+            table[pos++] = lane;
+      } // for
+    return table;
+  } // makePackTable()
+} // class IntVectorPartitioner
@@ -0,0 +1,350 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for Quicksorter, compared with the sorts in Arrays.  Each
+ * benchmark sorts a fresh copy of the same input, so the cost of the
+ * copy is included equally in all of them.
+ *
+ * JMH won't generate code for a class in the default package, and a
+ * class in a named package can't name Quicksorter, which is in the
+ * default package.  So we look up Quicksorter's methods by name once
+ * and call them through constant method handles, which the JIT
+ * compiles to direct calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuicksorterBench
+{
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The seed for the random number generator, so that every run
+   * sorts the same inputs.
+   */
+  public static final long SEED = 207;
+
+  /**
+   * Quicksorter.qsort(T[], Comparator<T>).
+   */
+  static final MethodHandle QSORT = sorter("qsort");
+
+  /**
+   * Quicksorter.stableQsort(T[], Comparator<T>).
+   */
+  static final MethodHandle STABLE_QSORT = sorter("stableQsort");
+
+  /**
+   * A comparator for integers that orders them from smallest to largest.
+   */
+  static final Comparator<Integer> INCREASING = new Comparator<Integer>()
+    {
+      public int compare(Integer left, Integer right)
+      {
+        return left.compareTo(right);
+      } // compare(Integer, Integer)
+    }; // new Comparator<Integer>
+
+  /**
+   * A comparator for points that orders them by distance from the
+   * origin.
+   */
+  static final Comparator<Point> BY_DISTANCE = new Comparator<Point>()
+    {
+      public int compare(Point left, Point right)
+      {
+        return Double.compare(left.distance(), right.distance());
+      } // compare(Point, Point)
+    }; // new Comparator<Point>
+
+  // +------------+------------------------------------------------------
+  // | Parameters |
+  // +------------+
+
+  /**
+   * The number of values to sort.
+   */
+  @Param({ "10", "1000", "100000", "10000000" })
+  public int size;
+
+  /**
+   * The shape of the input: "sorted", "reversed", "organpipe"
+   * (increasing and then decreasing), "random" (a random permutation
+   * of sorted values), or "duplicates" (a random permutation of only a
+   * few distinct values).
+   */
+  @Param({ "sorted", "reversed", "organpipe", "random", "duplicates" })
+  public String shape;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The integers to sort.
+   */
+  Integer[] ints;
+
+  /**
+   * The points to sort.
+   */
+  Point[] points;
+
+  // +-------+-----------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Build the inputs.
+   */
+  @Setup
+  public void setup()
+  {
+    Random random = new Random(SEED);
+    ints = randomSortedInts(random, size);
+    if (shape.equals("duplicates"))
+      {
+        for (int i = 0; i < size; i++)
+          ints[i] = i * 8 / size;
+      } // if duplicates
+    if (shape.equals("reversed"))
+      {
+        Integer[] reversed = new Integer[size];
+        for (int i = 0; i < size; i++)
+          reversed[i] = ints[size - 1 - i];
+        ints = reversed;
+      } // if reversed
+    else if (shape.equals("organpipe"))
+      {
+        // The even-numbered values going up, then the odd-numbered
+        // ones coming back down.
+        Integer[] pipe = new Integer[size];
+        int half = (size + 1) / 2;
+        for (int i = 0; i < half; i++)
+          pipe[i] = ints[2 * i];
+        for (int i = half; i < size; i++)
+          pipe[i] = ints[2 * (size - i) - 1];
+        ints = pipe;
+      } // if organpipe
+    else if (!shape.equals("sorted"))
+      permute(random, ints);
+
+    // Split each integer into two coordinates, which keeps x*x + y*y
+    // well within an int even for the largest sizes.
+    points = new Point[size];
+    for (int i = 0; i < size; i++)
+      points[i] = new Point(ints[i] % 1000, ints[i] / 1000);
+  } // setup()
+
+  // +------------+------------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Sort the integers with Quicksorter.qsort.
+   */
+  @Benchmark
+  public Integer[] qsortInts()
+  {
+    Integer[] values = ints.clone();
+    sort(QSORT, values, INCREASING);
+    return values;
+  } // qsortInts()
+
+  /**
+   * Sort the integers with Quicksorter.stableQsort.
+   */
+  @Benchmark
+  public Integer[] stableQsortInts()
+  {
+    Integer[] values = ints.clone();
+    sort(STABLE_QSORT, values, INCREASING);
+    return values;
+  } // stableQsortInts()
+
+  /**
+   * Sort the integers with Arrays.sort.
+   */
+  @Benchmark
+  public Integer[] arraysSortInts()
+  {
+    Integer[] values = ints.clone();
+    Arrays.sort(values, INCREASING);
+    return values;
+  } // arraysSortInts()
+
+  /**
+   * Sort the integers with Arrays.parallelSort.
+   */
+  @Benchmark
+  public Integer[] arraysParallelSortInts()
+  {
+    Integer[] values = ints.clone();
+    Arrays.parallelSort(values, INCREASING);
+    return values;
+  } // arraysParallelSortInts()
+
+  /**
+   * Sort the points with Quicksorter.qsort.
+   */
+  @Benchmark
+  public Point[] qsortPoints()
+  {
+    Point[] values = points.clone();
+    sort(QSORT, values, BY_DISTANCE);
+    return values;
+  } // qsortPoints()
+
+  /**
+   * Sort the points with Quicksorter.stableQsort.
+   */
+  @Benchmark
+  public Point[] stableQsortPoints()
+  {
+    Point[] values = points.clone();
+    sort(STABLE_QSORT, values, BY_DISTANCE);
+    return values;
+  } // stableQsortPoints()
+
+  /**
+   * Sort the points with Arrays.sort.
+   */
+  @Benchmark
+  public Point[] arraysSortPoints()
+  {
+    Point[] values = points.clone();
+    Arrays.sort(values, BY_DISTANCE);
+    return values;
+  } // arraysSortPoints()
+
+  /**
+   * Sort the points with Arrays.parallelSort.
+   */
+  @Benchmark
+  public Point[] arraysParallelSortPoints()
+  {
+    Point[] values = points.clone();
+    Arrays.parallelSort(values, BY_DISTANCE);
+    return values;
+  } // arraysParallelSortPoints()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Look up the Quicksorter method with the given name that takes a
+   * T[] and a Comparator<T>.
+   */
+  static MethodHandle sorter(String name)
+  {
+    try
+      {
+        return MethodHandles.lookup()
+            .findStatic(Class.forName("Quicksorter"), name,
+                        MethodType.methodType(void.class, Object[].class,
+                                              Comparator.class));
+      } // try
+    catch (ReflectiveOperationException e)
+      {
+        throw new IllegalStateException("Quicksorter is not on the classpath",
+                                        e);
+      } // catch (ReflectiveOperationException)
+  } // sorter(String)
+
+  /**
+   * Sort values with sorter, one of the method handles above.
+   */
+  static <T> void sort(MethodHandle sorter, T[] values, Comparator<T> order)
+  {
+    try
+      {
+        sorter.invokeExact((Object[]) values, (Comparator<?>) order);
+      } // try
+    catch (Throwable e)
+      {
+        throw new RuntimeException(e);
+      } // catch (Throwable)
+  } // sort(MethodHandle, T[], Comparator<T>)
+
+  /**
+   * Generate a "random" sorted array of integers of size n, with some
+   * duplicates and some gaps.
+   */
+  static Integer[] randomSortedInts(Random random, int n)
+  {
+    Integer[] values = new Integer[n];
+    if (n == 0)
+      return values;
+    values[0] = random.nextInt(10) - n;
+    for (int i = 1; i < n; i++)
+      values[i] = values[i - 1] + random.nextInt(4);
+    return values;
+  } // randomSortedInts(Random, int)
+
+  /**
+   * "Randomly" permute an array in place.
+   */
+  static <T> void permute(Random random, T[] values)
+  {
+    for (int i = 0; i < values.length; i++)
+      {
+        int j = random.nextInt(values.length);
+        T tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+      } // for
+  } // permute(Random, T[])
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A point in the plane.
+   */
+  static class Point
+  {
+    int x;
+    int y;
+
+    public Point(int x, int y)
+    {
+      this.x = x;
+      this.y = y;
+    } // Point(int, int)
+
+    /**
+     * Compute the distance from the origin.
+     */
+    public double distance()
+    {
+      return Math.sqrt(this.x * this.x + this.y * this.y);
+    } // distance()
+  } // class Point
+} // class QuicksorterBench